@@ -0,0 +1,275 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// Синтетический набор данных с формой рабочей базы: популярность фильмов по закону Ципфа,
+// активность пользователей и число друзей с тяжелым хвостом (Парето), друзья выбираются
+// с предпочтением уже популярных пользователей. Таблицы из schema.sql заполняются пакетными
+// вставками напрямую через JDBC в нескольких больших транзакциях, минуя хранилища приложения.
+// Запуск отдельно: mvn -Pbenchmarks test-compile exec:exec@generate-dataset -Ddataset.args="--url ... --users ..."
+@Slf4j
+public final class DatasetGenerator {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int ROWS_PER_TRANSACTION = 200_000;
+    private static final int GENRES = 6;
+    private static final int MPA_RATINGS = 5;
+    // Параметр хвоста распределения Парето: чем меньше, тем больше "тяжелых" пользователей
+    private static final double PARETO_ALPHA = 1.5;
+
+    private final int users;
+    private final int films;
+    private final int likesPerUser;
+    private final int friendsPerUser;
+    private final double zipfExponent;
+    private final Random random;
+
+    public DatasetGenerator(int users, int films, int likesPerUser, int friendsPerUser, double zipfExponent,
+                            long seed) {
+        this.users = users;
+        this.films = films;
+        this.likesPerUser = likesPerUser;
+        this.friendsPerUser = friendsPerUser;
+        this.zipfExponent = zipfExponent;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        Arguments arguments = new Arguments(args);
+        String url = arguments.get("url", "jdbc:h2:file:./db/filmorate-load");
+        fromArguments(arguments).generate(url);
+    }
+
+    static DatasetGenerator fromArguments(Arguments arguments) {
+        return new DatasetGenerator(
+                arguments.getInt("users", 100_000),
+                arguments.getInt("films", 50_000),
+                arguments.getInt("likes-per-user", 30),
+                arguments.getInt("friends-per-user", 20),
+                arguments.getDouble("zipf", 1.1),
+                arguments.getInt("seed", 42));
+    }
+
+    // Пересоздает схему по schema.sql и data.sql и заполняет таблицы
+    public void generate(String url) throws SQLException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "password");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            insertUsers(connection);
+            insertFilms(connection);
+            long likes = insertLikes(connection);
+            long friendships = insertFriendships(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("UPDATE films f SET likes_count = "
+                        + "(SELECT COUNT(*) FROM film_likes l WHERE l.film_id = f.id)");
+                // id вставлены явно, поэтому счетчики identity сдвигаются вручную
+                statement.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (users + 1));
+                statement.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (films + 1));
+            }
+            connection.commit();
+            log.info("Сгенерировано пользователей: {}, фильмов: {}, лайков: {}, дружб: {} за {} мс",
+                    users, films, likes, friendships, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void insertUsers(Connection connection) throws SQLException {
+        try (BatchWriter writer = new BatchWriter(connection,
+                "INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= users; i++) {
+                writer.add(i, "user" + i + "@mail.ru", "user" + i, "Пользователь " + i,
+                        Date.valueOf(LocalDate.of(1960, 1, 1).plusDays(random.nextInt(15000))));
+            }
+        }
+    }
+
+    private void insertFilms(Connection connection) throws SQLException {
+        try (BatchWriter writer = new BatchWriter(connection, "INSERT INTO films "
+                + "(id, name, description, release_date, duration, mpa_rating_id) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= films; i++) {
+                writer.add(i, "Фильм " + i, "Описание фильма номер " + i,
+                        Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(27000))),
+                        60 + random.nextInt(120), 1 + random.nextInt(MPA_RATINGS));
+            }
+        }
+        try (BatchWriter writer = new BatchWriter(connection,
+                "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)")) {
+            for (int i = 1; i <= films; i++) {
+                int first = 1 + random.nextInt(GENRES);
+                writer.add(i, first);
+                if (random.nextBoolean()) {
+                    writer.add(i, first % GENRES + 1);
+                }
+            }
+        }
+    }
+
+    // Число лайков пользователя - Парето со средним likesPerUser; фильм выбирается по рангу Ципфа,
+    // а ранги случайно перемешаны, чтобы популярность не совпадала с порядком id
+    private long insertLikes(Connection connection) throws SQLException {
+        ZipfSampler popularity = new ZipfSampler(films, zipfExponent, random);
+        int[] filmByRank = shuffledIds(films);
+        long total = 0;
+        try (BatchWriter writer = new BatchWriter(connection,
+                "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)")) {
+            Set<Integer> liked = new HashSet<>();
+            for (int user = 1; user <= users; user++) {
+                int count = paretoCount(likesPerUser, films / 2);
+                liked.clear();
+                // Верхняя граница попыток защищает от зацикливания на очень крутом распределении
+                for (int attempt = 0; liked.size() < count && attempt < count * 20; attempt++) {
+                    liked.add(filmByRank[popularity.next()]);
+                }
+                for (int film : liked) {
+                    writer.add(film, user);
+                }
+                total += liked.size();
+            }
+        }
+        return total;
+    }
+
+    // Степени - Парето со средним friendsPerUser; половина друзей выбирается среди концов уже
+    // созданных связей (предпочтительное присоединение), что дает "хабы" с тысячами подписчиков
+    private long insertFriendships(Connection connection) throws SQLException {
+        int[] endpoints = new int[1024];
+        int endpointCount = 0;
+        long total = 0;
+        try (BatchWriter writer = new BatchWriter(connection,
+                "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)")) {
+            Set<Integer> friends = new HashSet<>();
+            for (int user = 1; user <= users; user++) {
+                int count = paretoCount(friendsPerUser, users - 1);
+                friends.clear();
+                for (int attempt = 0; friends.size() < count && attempt < count * 20; attempt++) {
+                    int friend = endpointCount > 0 && random.nextBoolean()
+                            ? endpoints[random.nextInt(endpointCount)]
+                            : 1 + random.nextInt(users);
+                    if (friend != user) {
+                        friends.add(friend);
+                    }
+                }
+                for (int friend : friends) {
+                    writer.add(user, friend);
+                    if (endpointCount == endpoints.length) {
+                        endpoints = Arrays.copyOf(endpoints, endpointCount * 2);
+                    }
+                    endpoints[endpointCount++] = friend;
+                }
+                total += friends.size();
+            }
+        }
+        return total;
+    }
+
+    private int paretoCount(int mean, int max) {
+        if (mean <= 0 || max <= 0) {
+            return 0;
+        }
+        double scale = mean * (PARETO_ALPHA - 1) / PARETO_ALPHA;
+        double value = scale / Math.pow(1 - random.nextDouble(), 1 / PARETO_ALPHA);
+        return (int) Math.max(1, Math.min(max, Math.round(value)));
+    }
+
+    private int[] shuffledIds(int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return ids;
+    }
+
+    // Выборка ранга 0..n-1 с вероятностью, пропорциональной 1 / (rank + 1)^exponent
+    static final class ZipfSampler {
+        private final double[] cumulative;
+        private final Random random;
+
+        ZipfSampler(int n, double exponent, Random random) {
+            this.cumulative = new double[n];
+            this.random = random;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int next() {
+            int position = Arrays.binarySearch(cumulative, random.nextDouble());
+            int rank = position >= 0 ? position : -position - 1;
+            return Math.min(rank, cumulative.length - 1);
+        }
+    }
+
+    // Пакетная вставка с фиксацией транзакции каждые ROWS_PER_TRANSACTION строк
+    private static final class BatchWriter implements AutoCloseable {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private int batched;
+        private int uncommitted;
+
+        private BatchWriter(Connection connection, String sql) throws SQLException {
+            this.connection = connection;
+            this.statement = connection.prepareStatement(sql);
+        }
+
+        private void add(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.addBatch();
+            if (++batched == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (batched == 0) {
+                return;
+            }
+            statement.executeBatch();
+            uncommitted += batched;
+            batched = 0;
+            if (uncommitted >= ROWS_PER_TRANSACTION) {
+                connection.commit();
+                uncommitted = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+                connection.commit();
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.db.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.MultiIdLoader;
+import ru.yandex.practicum.filmorate.storage.db.UserDbStorage;
+
+import java.sql.SQLException;
+
+// Контекст приложения без веб-сервера поверх заранее заполненной базы; один на весь прогон бенчмарка
+@State(Scope.Benchmark)
+public class FilmorateState {
+
+    @Param("10000")
+    public int films;
+
+    @Param("5000")
+    public int users;
+
+    @Param("20")
+    public int likesPerUser;
+
+    @Param("30")
+    public int friendsPerUser;
+
+    // По умолчанию кэш сущностей выключен, чтобы чтение по id измеряло запрос к БД; -p entityCache=true - попадания в кэш
+    @Param("false")
+    public boolean entityCache;
+
+    ConfigurableApplicationContext context;
+    FilmDbStorage filmStorage;
+    UserDbStorage userStorage;
+    ObjectMapper objectMapper;
+    JdbcTemplate jdbcTemplate;
+    MultiIdLoader multiIdLoader;
+
+    @Setup(Level.Trial)
+    public void start() throws SQLException {
+        String url = "jdbc:h2:mem:bench" + System.nanoTime() + ";DB_CLOSE_DELAY=-1";
+        new DatasetGenerator(users, films, likesPerUser, friendsPerUser, 1.1, 42).generate(url);
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=" + url,
+                        "spring.sql.init.mode=never",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "spring.main.banner-mode=off",
+                        "filmorate.entity-cache.enabled=" + entityCache,
+                        "logging.level.root=WARN")
+                .run();
+        filmStorage = context.getBean(FilmDbStorage.class);
+        userStorage = context.getBean(UserDbStorage.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        multiIdLoader = context.getBean(MultiIdLoader.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+}
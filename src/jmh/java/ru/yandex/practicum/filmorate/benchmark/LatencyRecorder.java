@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.Arrays;
+
+// Задержки одной операции в одном потоке нагрузки; потоки пишут каждый в свой экземпляр,
+// а после прогона экземпляры объединяются, поэтому запись не требует синхронизации.
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+
+    void record(long nanos, boolean error) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        errors += other.errors;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int errors() {
+        return errors;
+    }
+
+    // Перцентили в миллисекундах по отсортированной копии; вызывается один раз после прогона
+    double[] percentilesMillis(double... percentiles) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (count == 0) {
+                continue;
+            }
+            int index = (int) Math.ceil(percentiles[i] / 100 * count) - 1;
+            result[i] = sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+        }
+        return result;
+    }
+}
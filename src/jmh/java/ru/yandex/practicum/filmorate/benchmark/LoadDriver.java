@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Нагрузочный прогон против встроенного сервера: генерирует данные (если не указан --skip-generate),
+// поднимает приложение на случайном порту и в несколько потоков воспроизводит смешанную нагрузку
+// на REST API фильмов и пользователей. В конце печатает пропускную способность и перцентили задержек
+// по каждой операции. Работает без сети, только через localhost.
+// Запуск: mvn -Pbenchmarks test-compile exec:exec@load-test -Dload.args="--threads 16 --duration 120"
+public final class LoadDriver {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+    private final Arguments arguments;
+    private final int users;
+    private final int films;
+    private final List<Operation> operations = new ArrayList<>();
+    private int totalWeight;
+
+    private LoadDriver(Arguments arguments) {
+        this.arguments = arguments;
+        this.users = arguments.getInt("users", 100_000);
+        this.films = arguments.getInt("films", 50_000);
+
+        // Смесь операций; вес меняется аргументом вида --weight.get-films-id 50 (0 исключает операцию)
+        operation("GET /films/{id}", 30, "GET", w -> "/films/" + w.film());
+        operation("GET /films/popular", 20, "GET", w -> "/films/popular?count=10");
+        operation("GET /films/popular?genreId&year", 5, "GET",
+                w -> "/films/popular?count=10&genreId=" + (1 + w.random.nextInt(6))
+                        + "&year=" + (1950 + w.random.nextInt(74)));
+        operation("GET /films/search", 5, "GET", w -> "/films/search?query=" + w.film());
+        operation("GET /users/{id}/friends", 15, "GET", w -> "/users/" + w.user() + "/friends");
+        operation("GET /users/{id}/friends/common/{otherId}", 10, "GET",
+                w -> "/users/" + w.user() + "/friends/common/" + w.user());
+        operation("GET /users/{id}/recommendations", 5, "GET", w -> "/users/" + w.user() + "/recommendations");
+        operation("PUT /films/{id}/like/{userId}", 8, "PUT", w -> "/films/" + w.film() + "/like/" + w.user());
+        operation("DELETE /films/{id}/like/{userId}", 2, "DELETE",
+                w -> "/films/" + w.film() + "/like/" + w.user());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadDriver(new Arguments(args)).run();
+    }
+
+    private void run() throws Exception {
+        String url = arguments.get("url", "jdbc:h2:file:./db/filmorate-load");
+        if (!arguments.has("skip-generate")) {
+            generate(url);
+        }
+        int threads = arguments.getInt("threads", 8);
+        long warmupMillis = TimeUnit.SECONDS.toMillis(arguments.getInt("warmup", 15));
+        long durationMillis = TimeUnit.SECONDS.toMillis(arguments.getInt("duration", 60));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties("spring.datasource.url=" + url,
+                        "spring.sql.init.mode=never",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port;
+            ExecutorService httpExecutor = Executors.newFixedThreadPool(threads);
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(httpExecutor)
+                    .build();
+
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            long warmupEnd = System.currentTimeMillis() + warmupMillis;
+            long end = warmupEnd + durationMillis;
+            List<Future<List<LatencyRecorder>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long seed = arguments.getInt("seed", 42) + i;
+                results.add(workers.submit(() -> drive(client, baseUrl, new Random(seed), warmupEnd, end)));
+            }
+
+            List<LatencyRecorder> merged = new ArrayList<>();
+            for (int i = 0; i < operations.size(); i++) {
+                merged.add(new LatencyRecorder());
+            }
+            for (Future<List<LatencyRecorder>> result : results) {
+                List<LatencyRecorder> recorders = result.get();
+                for (int i = 0; i < recorders.size(); i++) {
+                    merged.get(i).merge(recorders.get(i));
+                }
+            }
+            workers.shutdown();
+            httpExecutor.shutdown();
+            report(merged, durationMillis);
+        }
+    }
+
+    private void generate(String url) throws SQLException {
+        new DatasetGenerator(users, films,
+                arguments.getInt("likes-per-user", 30),
+                arguments.getInt("friends-per-user", 20),
+                arguments.getDouble("zipf", 1.1),
+                arguments.getInt("seed", 42)).generate(url);
+    }
+
+    // Замкнутый цикл одного потока: следующий запрос отправляется сразу после ответа на предыдущий
+    private List<LatencyRecorder> drive(HttpClient client, String baseUrl, Random random, long warmupEnd,
+                                        long end) throws InterruptedException {
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            recorders.add(new LatencyRecorder());
+        }
+        Workload workload = new Workload(random);
+        long now;
+        while ((now = System.currentTimeMillis()) < end) {
+            int index = pick(random);
+            Operation operation = operations.get(index);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + operation.path.apply(workload)))
+                    .method(operation.method, HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            long start = System.nanoTime();
+            boolean error;
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                // 404 - ожидаемый ответ, например снятие лайка, которого нет
+                error = response.statusCode() >= 500;
+            } catch (IOException e) {
+                error = true;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (now >= warmupEnd) {
+                recorders.get(index).record(elapsed, error);
+            }
+        }
+        return recorders;
+    }
+
+    private void report(List<LatencyRecorder> recorders, long durationMillis) {
+        double seconds = durationMillis / 1000.0;
+        System.out.printf("%-42s %9s %8s %7s %8s %8s %8s %8s %8s%n",
+                "operation", "req/s", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            LatencyRecorder recorder = recorders.get(i);
+            double[] p = recorder.percentilesMillis(PERCENTILES);
+            System.out.printf("%-42s %9.1f %8d %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    operations.get(i).name, recorder.count() / seconds, recorder.count(), recorder.errors(),
+                    p[0], p[1], p[2], p[3], p[4]);
+            total += recorder.count();
+        }
+        System.out.printf("%-42s %9.1f %8d%n", "total", total / seconds, total);
+    }
+
+    private void operation(String name, int defaultWeight, String method, Function<Workload, String> path) {
+        String key = "weight." + name.replaceAll("[^A-Za-z]+", "-").replaceAll("(^-|-$)", "").toLowerCase();
+        int weight = arguments.getInt(key, defaultWeight);
+        if (weight <= 0) {
+            return;
+        }
+        operations.add(new Operation(name, weight, method, path));
+        totalWeight += weight;
+    }
+
+    private int pick(Random random) {
+        int value = random.nextInt(totalWeight);
+        for (int i = 0; i < operations.size(); i++) {
+            value -= operations.get(i).weight;
+            if (value < 0) {
+                return i;
+            }
+        }
+        return operations.size() - 1;
+    }
+
+    // Случайные id для запросов одного потока: фильмы и пользователи выбираются по закону Ципфа,
+    // чтобы горячие записи запрашивались чаще, как в рабочей нагрузке
+    private final class Workload {
+        private final Random random;
+        private final DatasetGenerator.ZipfSampler filmSampler;
+        private final DatasetGenerator.ZipfSampler userSampler;
+
+        private Workload(Random random) {
+            this.random = random;
+            double exponent = arguments.getDouble("zipf", 1.1);
+            this.filmSampler = new DatasetGenerator.ZipfSampler(films, exponent, random);
+            this.userSampler = new DatasetGenerator.ZipfSampler(users, exponent, random);
+        }
+
+        private long film() {
+            return 1 + filmSampler.next();
+        }
+
+        private long user() {
+            return 1 + userSampler.next();
+        }
+    }
+
+    private static final class Operation {
+        private final String name;
+        private final int weight;
+        private final String method;
+        private final Function<Workload, String> path;
+
+        private Operation(String name, int weight, String method, Function<Workload, String> path) {
+            this.name = name;
+            this.weight = weight;
+            this.method = method;
+            this.path = path;
+        }
+    }
+}
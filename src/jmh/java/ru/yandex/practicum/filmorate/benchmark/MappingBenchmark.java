@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+import ru.yandex.practicum.filmorate.storage.db.mapper.FilmMapper;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Разбор строк ResultSet в Film без обращения к БД и сериализация готовых фильмов в JSON
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private final FilmMapper filmMapper = new FilmMapper();
+    private SimpleResultSet resultSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resultSet = new SimpleResultSet();
+        resultSet.setAutoClose(false);
+        resultSet.addColumn("id", Types.BIGINT, 19, 0);
+        resultSet.addColumn("name", Types.VARCHAR, 200, 0);
+        resultSet.addColumn("description", Types.VARCHAR, 200, 0);
+        resultSet.addColumn("release_date", Types.DATE, 10, 0);
+        resultSet.addColumn("duration", Types.INTEGER, 10, 0);
+        resultSet.addColumn("mpa_rating_id", Types.BIGINT, 19, 0);
+        resultSet.addColumn("mpa_name", Types.VARCHAR, 10, 0);
+        resultSet.addColumn("mpa_description", Types.VARCHAR, 200, 0);
+        resultSet.addColumn("likes_count", Types.INTEGER, 10, 0);
+        for (long i = 1; i <= ROWS; i++) {
+            resultSet.addRow(i, "Фильм " + i, "Описание фильма номер " + i,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(i * 7)), 90, 1L + i % 5, "PG-13",
+                    "Детям до 13 лет просмотр не желателен", (int) (i % 100));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapRow(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            blackhole.consume(filmMapper.mapRow(resultSet, rowNum++));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeFilm(SerializationState state) throws JsonProcessingException {
+        return state.app.objectMapper.writeValueAsBytes(state.film);
+    }
+
+    @Benchmark
+    public byte[] serializePopularFilms(SerializationState state) throws JsonProcessingException {
+        return state.app.objectMapper.writeValueAsBytes(state.popular);
+    }
+
+    // Фильмы берутся из хранилища, чтобы сериализовались реальные списки лайков и жанров
+    @State(Scope.Benchmark)
+    public static class SerializationState {
+        FilmorateState app;
+        Film film;
+        List<Film> popular;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState app) {
+            this.app = app;
+            this.popular = app.filmStorage.getPopularFilms(100, LikesMode.IDS);
+            this.film = popular.get(0);
+        }
+    }
+}
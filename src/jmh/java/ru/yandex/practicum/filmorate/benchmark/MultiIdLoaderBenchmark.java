@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+// Выборка фильмов по набору id: один параметр-массив через MultiIdLoader (id = ANY(?))
+// против прежнего IN-списка, собранного через String.format. Наборы id меняются от вызова к вызову,
+// как в реальных запросах, поэтому IN-список каждый раз разбирается заново, а запрос с массивом
+// всегда имеет один и тот же текст.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiIdLoaderBenchmark {
+
+    // Больше, чем кэш разобранных запросов сессии H2, чтобы IN-списки не попадали в него по кругу
+    private static final int ID_SETS = 64;
+    private static final RowMapper<Long> ID_MAPPER = (rs, rowNum) -> rs.getLong("id");
+
+    @Param({"10", "100", "1000", "5000"})
+    public int ids;
+
+    private final List<List<Long>> idSets = new ArrayList<>(ID_SETS);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void prepareIdSets(FilmorateState state) {
+        Random random = new Random(42);
+        int size = Math.min(ids, state.films);
+        for (int i = 0; i < ID_SETS; i++) {
+            idSets.add(LongStream.generate(() -> 1L + random.nextInt(state.films))
+                    .distinct()
+                    .limit(size)
+                    .boxed()
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    @Benchmark
+    public List<Long> arrayParameter(FilmorateState state) {
+        return state.multiIdLoader.query("SELECT id FROM films WHERE id = ANY(?)", nextIdSet(), ID_MAPPER);
+    }
+
+    @Benchmark
+    public List<Long> formattedInList(FilmorateState state) {
+        String inList = nextIdSet().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        return state.jdbcTemplate.query(String.format("SELECT id FROM films WHERE id IN (%s)", inList), ID_MAPPER);
+    }
+
+    private List<Long> nextIdSet() {
+        List<Long> idSet = idSets.get(next);
+        next = (next + 1) % ID_SETS;
+        return idSet;
+    }
+}
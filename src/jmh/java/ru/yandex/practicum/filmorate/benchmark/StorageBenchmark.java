@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StorageBenchmark {
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Film> getAllFilms(FilmorateState state) {
+        return state.filmStorage.getAllFilms(LikesMode.COUNT);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms(FilmorateState state) {
+        return state.filmStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenre(FilmorateState state) {
+        return state.filmStorage.getPopularFilms(10, 1L, null, LikesMode.IDS);
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmById(FilmorateState state) {
+        return state.filmStorage.getFilmById(1L + ThreadLocalRandom.current().nextInt(state.films));
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(FilmorateState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return state.userStorage.getCommonFriends(1L + random.nextInt(state.users), 1L + random.nextInt(state.users));
+    }
+}
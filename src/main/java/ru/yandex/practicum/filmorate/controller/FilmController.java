@@ -1,12 +1,25 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchReport;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearchField;
+import ru.yandex.practicum.filmorate.model.LikesMode;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -16,17 +29,57 @@ import java.util.List;
 public class FilmController {
 
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final ResourceVersions resourceVersions;
 
     @GetMapping
-    public List<Film> getAllFilms() {
-        log.info("Получен запрос на получение всех фильмов");
-        return filmService.getAllFilms();
+    public ResponseEntity<List<Film>> getAllFilms(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  @RequestParam(defaultValue = "ids") String likes) {
+        LikesMode likesMode = LikesMode.from(likes);
+        // Без параметров возвращается первая страница стандартного размера; весь каталог - через /films/export
+        log.info("Получен запрос на получение страницы фильмов после id {} (limit {})", after, limit);
+        CursorPage<Film> page = filmService.getFilms(after, limit, likesMode);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms(@RequestParam(defaultValue = "ids") String likes) {
+        log.info("Получен запрос на потоковую выгрузку каталога фильмов");
+        LikesMode likesMode = LikesMode.from(likes);
+        ObjectWriter writer = objectMapper.writerFor(Film.class);
+        StreamingResponseBody body = out -> filmService.exportFilms(likesMode, chunk -> {
+            try {
+                for (Film film : chunk) {
+                    out.write(writer.writeValueAsBytes(film));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
+    public Film getFilmById(@PathVariable Long id, @RequestParam(defaultValue = "ids") String likes,
+                            WebRequest request) {
         log.info("Получен запрос на получение фильма с id: {}", id);
-        return filmService.getFilmById(id);
+        LikesMode likesMode = LikesMode.from(likes);
+        // Ответ 304 формируется по версии фильма в памяти без загрузки фильма,
+        // но только для существующего фильма: на отсутствующий всегда отвечаем 404
+        filmService.validateFilmExists(id);
+        if (request.checkNotModified(resourceVersions.filmTag(id, likesMode))) {
+            return null;
+        }
+        return filmService.getFilmById(id, likesMode);
     }
 
     @PostMapping
@@ -41,6 +94,18 @@ public class FilmController {
         return filmService.updateFilm(film);
     }
 
+    @PostMapping("/batch")
+    public BatchReport createFilms(@RequestBody List<Film> films) {
+        log.info("Получен запрос на пакетное создание {} фильмов", films.size());
+        return filmService.createFilms(films);
+    }
+
+    @PutMapping("/batch")
+    public BatchReport updateFilms(@RequestBody List<Film> films) {
+        log.info("Получен запрос на пакетное обновление {} фильмов", films.size());
+        return filmService.updateFilms(films);
+    }
+
     @DeleteMapping("/{id}")
     public void deleteFilm(@PathVariable Long id) {
         log.info("Получен запрос на удаление фильма с id: {}", id);
@@ -59,9 +124,27 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam(required = false) String query,
+                                  @RequestParam(required = false) String by,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestParam(defaultValue = "ids") String likes) {
+        log.info("Получен запрос на поиск фильмов: \"{}\" (поля {}, limit {})", query, by, limit);
+        return filmService.searchFilms(query, FilmSearchField.parse(by), limit, LikesMode.from(likes));
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") Integer count) {
-        log.info("Получен запрос на получение {} самых популярных фильмов", count);
-        return filmService.getPopularFilms(count);
+    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") Integer count,
+                                      @RequestParam(required = false) Long genreId,
+                                      @RequestParam(required = false) Integer year,
+                                      @RequestParam(defaultValue = "ids") String likes,
+                                      WebRequest request) {
+        log.info("Получен запрос на получение {} самых популярных фильмов (жанр {}, год {})", count, genreId, year);
+        LikesMode likesMode = LikesMode.from(likes);
+        int size = filmService.validatePopularCount(count);
+        if (request.checkNotModified(resourceVersions.popularTag(size, genreId, year, likesMode))) {
+            return null;
+        }
+        return filmService.getPopularFilms(size, genreId, year, likesMode);
     }
 }
\ No newline at end of file
@@ -3,8 +3,10 @@ package ru.yandex.practicum.filmorate.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -16,19 +18,28 @@ import java.util.NoSuchElementException;
 public class GenreController {
 
     private final GenreDbStorage genreStorage;
+    private final ResourceVersions resourceVersions;
 
     @GetMapping
-    public List<Genre> getAllGenres() {
+    public List<Genre> getAllGenres(WebRequest request) {
         log.info("Получен запрос на получение всех жанров");
+        if (request.checkNotModified(resourceVersions.genresTag())) {
+            return null;
+        }
         return genreStorage.getAllGenres();
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable Long id) {
+    public Genre getGenreById(@PathVariable Long id, WebRequest request) {
         log.info("Получен запрос на получение жанра с id: {}", id);
-        return genreStorage.getGenreById(id)
+        // Справочник в памяти, поэтому жанр ищется до проверки тега: на отсутствующий всегда отвечаем 404
+        Genre genre = genreStorage.getGenreById(id)
                 .orElseThrow(() -> new NoSuchElementException(
                         String.format("Жанр с id %d не найден", id)
                 ));
+        if (request.checkNotModified(resourceVersions.genresTag())) {
+            return null;
+        }
+        return genre;
     }
 }
\ No newline at end of file
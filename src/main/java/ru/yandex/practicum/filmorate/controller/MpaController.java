@@ -3,8 +3,10 @@ package ru.yandex.practicum.filmorate.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -15,17 +17,26 @@ import java.util.NoSuchElementException;
 @RequiredArgsConstructor
 public class MpaController {
     private final MpaDbStorage mpaStorage;
+    private final ResourceVersions resourceVersions;
 
     @GetMapping
-    public List<MpaRating> getAllMpa() {
+    public List<MpaRating> getAllMpa(WebRequest request) {
         log.info("Получен запрос на получение всех рейтингов MPA");
+        if (request.checkNotModified(resourceVersions.mpaTag())) {
+            return null;
+        }
         return mpaStorage.getAllMpa();
     }
 
     @GetMapping("/{id}")
-    public MpaRating getMpaById(@PathVariable Long id) {
+    public MpaRating getMpaById(@PathVariable Long id, WebRequest request) {
         log.info("Получен запрос на получение рейтинга MPA с id: {}", id);
-        return mpaStorage.getMpaById(id)
+        // Справочник в памяти, поэтому рейтинг ищется до проверки тега: на отсутствующий всегда отвечаем 404
+        MpaRating mpa = mpaStorage.getMpaById(id)
                 .orElseThrow(() -> new NoSuchElementException("Рейтинг MPA с id " + id + " не найден"));
+        if (request.checkNotModified(resourceVersions.mpaTag())) {
+            return null;
+        }
+        return mpa;
     }
 }
\ No newline at end of file
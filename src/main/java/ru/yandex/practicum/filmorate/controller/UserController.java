@@ -2,11 +2,22 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.BatchReport;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikesMode;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -18,9 +29,16 @@ public class UserController {
     private final UserService userService;
 
     @GetMapping
-    public List<User> getAllUsers() {
-        log.info("Получен запрос на получение всех пользователей");
-        return userService.getAllUsers();
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        // Без параметров возвращается первая страница стандартного размера, следующие - по X-Next-Cursor
+        log.info("Получен запрос на получение страницы пользователей после id {} (limit {})", after, limit);
+        CursorPage<User> page = userService.getUsers(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
     }
 
     @GetMapping("/{id}")
@@ -35,6 +53,19 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchReport createUsers(@RequestBody List<User> users) {
+        log.info("Получен запрос на пакетное создание {} пользователей", users.size());
+        return userService.createUsers(users);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BatchReport importUsers(InputStream body) throws IOException {
+        log.info("Получен запрос на потоковый импорт пользователей");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        return userService.importUsers(reader);
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody User user) {
         log.info("Получен запрос на обновление пользователя с id: {}", user.getId());
@@ -65,9 +96,23 @@ public class UserController {
         return userService.getFriends(id);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(required = false) Integer limit) {
+        log.info("Получен запрос на рекомендации друзей для пользователя {} (limit {})", id, limit);
+        return userService.getFriendSuggestions(id, limit);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
         log.info("Получен запрос на получение общих друзей пользователей {} и {}", id, otherId);
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(defaultValue = "ids") String likes) {
+        log.info("Получен запрос на рекомендации фильмов для пользователя {} (limit {})", id, limit);
+        return userService.getRecommendations(id, limit, LikesMode.from(likes));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Записывает число обращений к БД за один HTTP-запрос с тегами метода и шаблона URI,
+// чтобы по гистограмме было видно эндпоинты с N+1 запросами.
+// Реестр метрик берется лениво: перехватчик создается вместе с конфигурацией MVC, и прямая
+// зависимость от реестра замыкала бы цикл через аспекты, которым реестр нужен при создании.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class QueryCountInterceptor implements AsyncHandlerInterceptor {
+
+    static final String SUMMARY = "filmorate.http.queries";
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    @Value("${filmorate.metrics.query-count-warn-threshold:20}")
+    private int warnThreshold;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCountingAspect.startRequest();
+        return true;
+    }
+
+    // Асинхронный запрос (потоковая выгрузка) дорабатывает в другом потоке - его обращения не считаем
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        QueryCountingAspect.finishRequest();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        int queries = QueryCountingAspect.finishRequest();
+        if (queries < 0) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder(SUMMARY)
+                .description("Количество обращений к БД за HTTP-запрос")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(registry.getObject())
+                .record(queries);
+        if (queries > warnThreshold) {
+            log.warn("Запрос {} {} выполнил {} обращений к БД", request.getMethod(), uri, queries);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Считает обращения к БД через JdbcTemplate: общий счетчик и счетчик текущего HTTP-запроса.
+// Задачи пулов, обернутые через propagate, считаются в запрос, который их запустил.
+// Внутренние вызовы JdbcTemplate самого себя идут мимо прокси, поэтому один query(...) - одно обращение;
+// batchUpdate считается одним обращением независимо от размера пакета.
+@Aspect
+@Component
+public class QueryCountingAspect {
+
+    static final String COUNTER = "filmorate.jdbc.queries";
+
+    private static final ThreadLocal<AtomicInteger> REQUEST_QUERIES = new ThreadLocal<>();
+
+    private final Counter queries;
+
+    public QueryCountingAspect(MeterRegistry registry) {
+        this.queries = Counter.builder(COUNTER)
+                .description("Количество обращений к БД через JdbcTemplate")
+                .register(registry);
+    }
+
+    @Before("execution(* org.springframework.jdbc.core.JdbcOperations.query*(..))"
+            + " || execution(* org.springframework.jdbc.core.JdbcOperations.update(..))"
+            + " || execution(* org.springframework.jdbc.core.JdbcOperations.batchUpdate(..))"
+            + " || execution(* org.springframework.jdbc.core.JdbcOperations.execute(..))"
+            + " || execution(* org.springframework.jdbc.core.JdbcOperations.call(..))")
+    public void count() {
+        queries.increment();
+        AtomicInteger current = REQUEST_QUERIES.get();
+        if (current != null) {
+            current.incrementAndGet();
+        }
+    }
+
+    // Начинает подсчет обращений в текущем потоке
+    static void startRequest() {
+        REQUEST_QUERIES.set(new AtomicInteger());
+    }
+
+    // Возвращает число обращений с момента startRequest или -1, если подсчет не был начат
+    static int finishRequest() {
+        AtomicInteger current = REQUEST_QUERIES.get();
+        REQUEST_QUERIES.remove();
+        return current == null ? -1 : current.get();
+    }
+
+    // Переносит счетчик текущего запроса в задачу пула, чтобы ее обращения к БД попали в тот же запрос
+    static Runnable propagate(Runnable task) {
+        AtomicInteger current = REQUEST_QUERIES.get();
+        if (current == null) {
+            return task;
+        }
+        return () -> {
+            AtomicInteger previous = REQUEST_QUERIES.get();
+            REQUEST_QUERIES.set(current);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    REQUEST_QUERIES.remove();
+                } else {
+                    REQUEST_QUERIES.set(previous);
+                }
+            }
+        };
+    }
+}
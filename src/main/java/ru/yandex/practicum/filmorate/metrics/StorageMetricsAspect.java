@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Время выполнения и размер результата для каждого публичного метода FilmStorage и UserStorage.
+// Метры ищутся в реестре один раз на метод, дальше берутся из кэша - на горячем пути нет поиска по тегам.
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class StorageMetricsAspect {
+
+    static final String TIMER = "filmorate.storage";
+    static final String RESULT_SIZE = "filmorate.storage.result.size";
+
+    private final MeterRegistry registry;
+    private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.FilmStorage+.*(..))"
+            + " || execution(public * ru.yandex.practicum.filmorate.storage.UserStorage+.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Meters methodMeters = meters.computeIfAbsent(method,
+                m -> new Meters(AopUtils.getTargetClass(joinPoint.getTarget()).getSimpleName(), m.getName()));
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            methodMeters.failed(e).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        methodMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        int size = sizeOf(result);
+        if (size >= 0) {
+            methodMeters.resultSize.record(size);
+        }
+        return result;
+    }
+
+    // -1 - у результата нет осмысленного размера (void, потоки, одиночные значения)
+    private static int sizeOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        if (result instanceof CursorPage) {
+            return ((CursorPage<?>) result).getItems().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof long[]) {
+            return ((long[]) result).length;
+        }
+        return -1;
+    }
+
+    private final class Meters {
+        private final String storage;
+        private final String method;
+        private final Timer timer;
+        private final DistributionSummary resultSize;
+
+        private Meters(String storage, String method) {
+            this.storage = storage;
+            this.method = method;
+            this.timer = timer("none");
+            this.resultSize = DistributionSummary.builder(RESULT_SIZE)
+                    .description("Размер результата метода хранилища")
+                    .tag("storage", storage)
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        private Timer failed(Throwable e) {
+            return timer(e.getClass().getSimpleName());
+        }
+
+        private Timer timer(String exception) {
+            return Timer.builder(TIMER)
+                    .description("Время выполнения метода хранилища")
+                    .tag("storage", storage)
+                    .tag("method", method)
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    // позиция элемента во входном пакете
+    private final int index;
+    private final Long id;
+    private final String error;
+
+    public static BatchItemResult success(int index, Long id) {
+        return new BatchItemResult(index, id, null);
+    }
+
+    public static BatchItemResult failure(int index, Long id, String error) {
+        return new BatchItemResult(index, id, error);
+    }
+}
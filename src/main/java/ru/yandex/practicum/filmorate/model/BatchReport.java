@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Data
+public class BatchReport {
+    private final int total;
+    private final int succeeded;
+    private final int failed;
+    private final long elapsedMs;
+    private final double rowsPerSecond;
+    private final List<BatchItemResult> items;
+
+    public static BatchReport of(List<BatchItemResult> items, long startNanos) {
+        items.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        int failed = (int) items.stream()
+                .filter(item -> item.getError() != null)
+                .count();
+        long elapsedNanos = Math.max(System.nanoTime() - startNanos, 1);
+        double rowsPerSecond = items.size() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        return new BatchReport(items.size(), items.size() - failed, failed,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond, items);
+    }
+}
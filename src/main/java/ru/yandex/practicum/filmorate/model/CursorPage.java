@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+public class CursorPage<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    // id последнего элемента страницы или null, если страница последняя
+    private final Long nextCursor;
+
+    public static int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Параметр limit должен быть в диапазоне от 1 до " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    public static <T> CursorPage<T> of(List<T> items, int limit, Function<T, Long> idExtractor) {
+        Long nextCursor = items.size() < limit ? null : idExtractor.apply(items.get(items.size() - 1));
+        return new CursorPage<>(items, nextCursor);
+    }
+}
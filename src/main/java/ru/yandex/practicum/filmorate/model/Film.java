@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -28,5 +31,13 @@ public class Film {
 
     private MpaRating mpa;
     private List<Genre> genres;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = LongIdSet.Serializer.class)
+    @JsonDeserialize(using = LongIdSet.Deserializer.class)
     private Set<Long> likes;
+
+    // Заполняется только в режиме likes=count
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer likesCount;
 }
\ No newline at end of file
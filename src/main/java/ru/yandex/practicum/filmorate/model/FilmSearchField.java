@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+// Поля фильма, по которым выполняется полнотекстовый поиск, и их вес в релевантности
+public enum FilmSearchField {
+    TITLE(2),
+    DESCRIPTION(1);
+
+    private final int weight;
+
+    FilmSearchField(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    // Разбирает список полей через запятую, например "title,description"; пустое значение - все поля
+    public static Set<FilmSearchField> parse(String value) {
+        if (value == null || value.isBlank()) {
+            return EnumSet.allOf(FilmSearchField.class);
+        }
+        Set<FilmSearchField> fields = EnumSet.noneOf(FilmSearchField.class);
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            try {
+                fields.add(valueOf(part.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Параметр by должен содержать значения title и/или description");
+            }
+        }
+        if (fields.isEmpty()) {
+            return EnumSet.allOf(FilmSearchField.class);
+        }
+        return fields;
+    }
+}
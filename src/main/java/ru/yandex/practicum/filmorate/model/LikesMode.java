@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Locale;
+
+// Какие данные о лайках нужно загрузить для фильма
+public enum LikesMode {
+    // полный список id пользователей
+    IDS,
+    // только количество лайков из films.likes_count, строки film_likes не читаются
+    COUNT,
+    // лайки не загружаются
+    NONE;
+
+    public static LikesMode from(String value) {
+        if (value == null || value.isBlank()) {
+            return IDS;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Параметр likes должен принимать значение ids, count или none");
+        }
+    }
+}
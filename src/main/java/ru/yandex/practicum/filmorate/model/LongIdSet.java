@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+// Неизменяемое множество id на отсортированном массиве long[] без упаковки элементов
+public final class LongIdSet extends AbstractSet<Long> {
+
+    private static final LongIdSet EMPTY = new LongIdSet(new long[0]);
+
+    private final long[] ids;
+
+    private LongIdSet(long[] ids) {
+        this.ids = ids;
+    }
+
+    public static LongIdSet empty() {
+        return EMPTY;
+    }
+
+    public static LongIdSet of(long... ids) {
+        return fromArray(Arrays.copyOf(ids, ids.length), ids.length, false);
+    }
+
+    public static LongIdSet copyOf(Collection<Long> ids) {
+        if (ids instanceof LongIdSet) {
+            return (LongIdSet) ids;
+        }
+        long[] values = new long[ids.size()];
+        int size = 0;
+        for (Long id : ids) {
+            values[size++] = id;
+        }
+        return fromArray(values, size, false);
+    }
+
+    private static LongIdSet fromArray(long[] values, int size, boolean sorted) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        if (!sorted) {
+            Arrays.sort(values, 0, size);
+        }
+        int unique = 1;
+        for (int i = 1; i < size; i++) {
+            if (values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return new LongIdSet(unique == values.length ? values : Arrays.copyOf(values, unique));
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue());
+    }
+
+    public long get(int index) {
+        return ids[index];
+    }
+
+    public long[] toLongArray() {
+        return ids.clone();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < ids.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (position >= ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return ids[position++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private long[] values = new long[8];
+        private int size;
+        private boolean sorted = true;
+
+        public Builder add(long id) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            if (size > 0 && id < values[size - 1]) {
+                sorted = false;
+            }
+            values[size++] = id;
+            return this;
+        }
+
+        public LongIdSet build() {
+            return fromArray(values, size, sorted);
+        }
+
+        // Тот же результат, что build().toLongArray(), но без защитной копии
+        public long[] buildArray() {
+            return build().ids;
+        }
+    }
+
+    // Сериализует множество как обычный JSON-массив чисел, не создавая объектов Long
+    public static final class Serializer extends JsonSerializer<Set<Long>> {
+        @Override
+        public void serialize(Set<Long> value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartArray(value, value.size());
+            if (value instanceof LongIdSet) {
+                for (long id : ((LongIdSet) value).ids) {
+                    gen.writeNumber(id);
+                }
+            } else {
+                for (Long id : value) {
+                    gen.writeNumber(id);
+                }
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    public static final class Deserializer extends JsonDeserializer<Set<Long>> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<Long> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                return (Set<Long>) ctxt.handleUnexpectedToken(Set.class, p);
+            }
+            Builder builder = builder();
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    return (Set<Long>) ctxt.handleUnexpectedToken(Long.class, p);
+                }
+                builder.add(p.getLongValue());
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.index.TwoHopCounter;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Рекомендации фильмов по лайкам похожих пользователей: похожесть - число общих лайков,
+// кандидаты - фильмы соседей, которые пользователь еще не лайкал, с весом, равным похожести соседа.
+// Векторы лайков берутся из графа film_likes в памяти. Результат кэшируется вместе с массивами,
+// из которых он посчитан, и пересчитывается только тогда, когда граф заменил хотя бы один из них.
+@Service
+@Slf4j
+public class FilmRecommendationService {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    private static final long[] NO_FILMS = new long[0];
+    private static final long[][] NO_VECTORS = new long[0][];
+
+    private final FilmStorage filmStorage;
+    private final int neighbours;
+    private final long idleMs;
+    private final int refreshBatchSize;
+    private final ForkJoinPool pool;
+    private final TwoHopCounter twoHopCounter;
+
+    private final Cache<Long, Recommendation> cache;
+
+    public FilmRecommendationService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${filmorate.recommendations.neighbours:50}") int neighbours,
+                                     @Value("${filmorate.recommendations.max-expansion:500000}") int maxExpansion,
+                                     @Value("${filmorate.recommendations.parallel-threshold:256}") int parallelThreshold,
+                                     @Value("${filmorate.recommendations.threads:4}") int threads,
+                                     @Value("${filmorate.recommendations.idle-ms:600000}") long idleMs,
+                                     @Value("${filmorate.recommendations.cache-size:10000}") int maxCachedUsers,
+                                     @Value("${filmorate.recommendations.refresh-batch-size:200}") int refreshBatchSize) {
+        this.filmStorage = filmStorage;
+        this.neighbours = neighbours;
+        this.idleMs = idleMs;
+        this.refreshBatchSize = refreshBatchSize;
+        this.pool = new ForkJoinPool(threads);
+        this.twoHopCounter = new TwoHopCounter(pool, maxExpansion, parallelThreshold);
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .recordStats()
+                .build(), "film-recommendations");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public List<Film> getRecommendations(long userId, int limit, LikesMode likesMode) {
+        long[] filmIds = getRecommendation(userId).filmIds;
+        int size = Math.min(limit, filmIds.length);
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(filmIds[i]);
+        }
+        return filmStorage.getFilmsByIds(ids, likesMode);
+    }
+
+    // Проверка актуальности - сравнение ссылок на массивы, она намного дешевле пересчета,
+    // поэтому выполняется при каждом запросе: любые изменения лайков видны сразу.
+    private Recommendation getRecommendation(long userId) {
+        Recommendation cached = cache.getIfPresent(userId);
+        if (cached != null && isCurrent(userId, cached)) {
+            cached.lastAccessMillis = System.currentTimeMillis();
+            return cached;
+        }
+
+        Recommendation recommendation = compute(userId);
+        cache.put(userId, recommendation);
+        return recommendation;
+    }
+
+    // Заранее пересчитывает записи, чьи исходные массивы изменились, не больше refresh-batch-size за проход,
+    // чтобы запросы попадали в кэш. Записи, которые не запрашивались дольше idle-ms, удаляются.
+    @Scheduled(initialDelayString = "${filmorate.recommendations.refresh-interval-ms:5000}",
+            fixedDelayString = "${filmorate.recommendations.refresh-interval-ms:5000}")
+    public void refreshStale() {
+        long now = System.currentTimeMillis();
+        int refreshed = 0;
+        Map<Long, Recommendation> entries = cache.asMap();
+        for (Map.Entry<Long, Recommendation> entry : entries.entrySet()) {
+            if (refreshed >= refreshBatchSize) {
+                break;
+            }
+            long userId = entry.getKey();
+            Recommendation recommendation = entry.getValue();
+            if (now - recommendation.lastAccessMillis > idleMs) {
+                entries.remove(userId, recommendation);
+            } else if (!isCurrent(userId, recommendation)) {
+                Recommendation updated = compute(userId);
+                updated.lastAccessMillis = recommendation.lastAccessMillis;
+                entries.replace(userId, recommendation, updated);
+                refreshed++;
+            }
+        }
+        if (refreshed > 0) {
+            log.debug("Фоновое обновление рекомендаций: пересчитано {}, в кэше {}", refreshed, cache.estimatedSize());
+        }
+    }
+
+    // Похожесть соседей зависит только от лайков пользователя и лайкеров этих фильмов,
+    // веса кандидатов - только от лайков ближайших соседей
+    private boolean isCurrent(long userId, Recommendation recommendation) {
+        if (filmStorage.getLikedFilmIds(userId) != recommendation.likedFilms) {
+            return false;
+        }
+        for (int i = 0; i < recommendation.likedFilms.length; i++) {
+            if (filmStorage.getFilmLikerIds(recommendation.likedFilms[i]) != recommendation.likers[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < recommendation.nearest.length; i++) {
+            if (filmStorage.getLikedFilmIds(recommendation.nearest[i]) != recommendation.neighbourFilms[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Recommendation compute(long userId) {
+        long[] likedFilms = filmStorage.getLikedFilmIds(userId);
+        if (likedFilms.length == 0) {
+            return new Recommendation(likedFilms, NO_VECTORS, NO_FILMS, NO_VECTORS, NO_FILMS);
+        }
+
+        // Каждый массив читается из графа один раз: результат соответствует ровно тем версиям, что сохранены
+        long[][] likers = new long[likedFilms.length][];
+        for (int i = 0; i < likedFilms.length; i++) {
+            likers[i] = filmStorage.getFilmLikerIds(likedFilms[i]);
+        }
+
+        // Шаг 1: пересечение лайков с каждым пользователем, лайкнувшим хотя бы один из тех же фильмов
+        LongIntCounter overlap = twoHopCounter.count(likedFilms,
+                filmId -> likers[Arrays.binarySearch(likedFilms, filmId)],
+                otherUserId -> otherUserId != userId);
+        long[] nearest = overlap.top(neighbours);
+
+        // Шаг 2: фильмы ближайших соседей с весом, равным числу общих лайков
+        long[][] neighbourFilms = new long[nearest.length][];
+        LongIntCounter scores = new LongIntCounter();
+        for (int i = 0; i < nearest.length; i++) {
+            int weight = overlap.get(nearest[i]);
+            neighbourFilms[i] = filmStorage.getLikedFilmIds(nearest[i]);
+            for (long filmId : neighbourFilms[i]) {
+                if (Arrays.binarySearch(likedFilms, filmId) < 0) {
+                    scores.increment(filmId, weight);
+                }
+            }
+        }
+
+        log.debug("Рекомендации фильмов для пользователя {}: лайков {}, похожих пользователей {}, кандидатов {}",
+                userId, likedFilms.length, overlap.size(), scores.size());
+        return new Recommendation(likedFilms, likers, nearest, neighbourFilms, scores.top(MAX_LIMIT));
+    }
+
+    private static final class Recommendation {
+        // Массивы графа, по которым посчитан результат: граф заменяет массив при каждом изменении,
+        // поэтому другая ссылка означает, что исходные данные поменялись
+        private final long[] likedFilms;
+        private final long[][] likers;
+        private final long[] nearest;
+        private final long[][] neighbourFilms;
+        private final long[] filmIds;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        private Recommendation(long[] likedFilms, long[][] likers, long[] nearest, long[][] neighbourFilms,
+                               long[] filmIds) {
+            this.likedFilms = likedFilms;
+            this.likers = likers;
+            this.nearest = nearest;
+            this.neighbourFilms = neighbourFilms;
+            this.filmIds = filmIds;
+        }
+    }
+}
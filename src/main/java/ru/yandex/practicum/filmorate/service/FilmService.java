@@ -3,17 +3,30 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.BatchReport;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearchField;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikesMode;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,15 +38,48 @@ public class FilmService {
     private final FilmStorage filmStorage;
     private final MpaDbStorage mpaDbStorage;
     private final GenreDbStorage genreDbStorage;
+    private final Validator validator;
 
     private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+    private static final int EXPORT_CHUNK_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int DEFAULT_POPULAR_COUNT = 10;
+    private static final int MAX_POPULAR_COUNT = 1000;
 
     public List<Film> getAllFilms() {
-        return filmStorage.getAllFilms();
+        return getAllFilms(LikesMode.IDS);
+    }
+
+    public List<Film> getAllFilms(LikesMode likesMode) {
+        return filmStorage.getAllFilms(likesMode);
+    }
+
+    public CursorPage<Film> getFilms(Long after, Integer limit, LikesMode likesMode) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        return CursorPage.of(filmStorage.getFilms(after, pageSize, likesMode), pageSize, Film::getId);
+    }
+
+    public void exportFilms(LikesMode likesMode, Consumer<List<Film>> chunkConsumer) {
+        Long after = null;
+        List<Film> chunk;
+        do {
+            chunk = filmStorage.getFilms(after, EXPORT_CHUNK_SIZE, likesMode);
+            if (chunk.isEmpty()) {
+                return;
+            }
+            chunkConsumer.accept(chunk);
+            after = chunk.get(chunk.size() - 1).getId();
+        } while (chunk.size() == EXPORT_CHUNK_SIZE);
     }
 
     public Film getFilmById(Long id) {
-        return filmStorage.getFilmById(id)
+        return getFilmById(id, LikesMode.IDS);
+    }
+
+    public Film getFilmById(Long id, LikesMode likesMode) {
+        return filmStorage.getFilmById(id, likesMode)
                 .orElseThrow(() -> new NoSuchElementException("Фильм с id " + id + " не найден"));
     }
 
@@ -48,16 +94,100 @@ public class FilmService {
         validateFilm(film);
         validateMpaExists(film);
         validateGenresExist(film);
-        getFilmById(film.getId()); // Проверяем существование фильма
+        validateFilmExists(film.getId());
         return filmStorage.updateFilm(film);
     }
 
+    // Корректные фильмы пишутся одной транзакцией хранилища. Если она откатилась из-за ошибки БД,
+    // фильмы пишутся по одному, чтобы ошибка досталась только своему элементу пакета
+    public BatchReport createFilms(List<Film> films) {
+        long start = System.nanoTime();
+        validateBatchSize(films);
+        List<BatchItemResult> results = new ArrayList<>(films.size());
+        List<Film> valid = new ArrayList<>(films.size());
+        List<Integer> validIndexes = new ArrayList<>(films.size());
+        for (int i = 0; i < films.size(); i++) {
+            String error = validateBatchItem(films.get(i));
+            if (error == null) {
+                valid.add(films.get(i));
+                validIndexes.add(i);
+            } else {
+                results.add(BatchItemResult.failure(i, null, error));
+            }
+        }
+
+        try {
+            List<Film> created = filmStorage.createFilms(valid);
+            for (int i = 0; i < created.size(); i++) {
+                results.add(BatchItemResult.success(validIndexes.get(i), created.get(i).getId()));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Пакетное создание фильмов не удалось ({}), выполняется построчная запись", e.getMessage());
+            for (int i = 0; i < valid.size(); i++) {
+                Film film = valid.get(i);
+                try {
+                    film.setId(null);
+                    filmStorage.createFilms(List.of(film));
+                    results.add(BatchItemResult.success(validIndexes.get(i), film.getId()));
+                } catch (DataAccessException rowError) {
+                    log.warn("Не удалось создать фильм \"{}\": {}", film.getName(), rowError.getMessage());
+                    results.add(BatchItemResult.failure(validIndexes.get(i), null, "Не удалось сохранить фильм"));
+                }
+            }
+        }
+        return BatchReport.of(results, start);
+    }
+
+    public BatchReport updateFilms(List<Film> films) {
+        long start = System.nanoTime();
+        validateBatchSize(films);
+        List<BatchItemResult> results = new ArrayList<>(films.size());
+        List<Film> valid = new ArrayList<>(films.size());
+        Map<Film, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            String error = film.getId() == null ? "Не указан id фильма" : validateBatchItem(film);
+            if (error == null) {
+                valid.add(film);
+                indexes.put(film, i);
+            } else {
+                results.add(BatchItemResult.failure(i, film.getId(), error));
+            }
+        }
+
+        Set<Film> updated = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Film, String> failed = new IdentityHashMap<>();
+        try {
+            updated.addAll(filmStorage.updateFilms(valid));
+        } catch (DataAccessException e) {
+            log.warn("Пакетное обновление фильмов не удалось ({}), выполняется построчная запись", e.getMessage());
+            for (Film film : valid) {
+                try {
+                    updated.addAll(filmStorage.updateFilms(List.of(film)));
+                } catch (DataAccessException rowError) {
+                    log.warn("Не удалось обновить фильм с id {}: {}", film.getId(), rowError.getMessage());
+                    failed.put(film, "Не удалось сохранить фильм");
+                }
+            }
+        }
+        for (Film film : valid) {
+            int index = indexes.get(film);
+            if (updated.contains(film)) {
+                results.add(BatchItemResult.success(index, film.getId()));
+            } else {
+                results.add(BatchItemResult.failure(index, film.getId(),
+                        failed.getOrDefault(film, "Фильм с id " + film.getId() + " не найден")));
+            }
+        }
+        return BatchReport.of(results, start);
+    }
+
     public void deleteFilm(Long id) {
         filmStorage.deleteFilm(id);
     }
 
+    // Существование фильма и пользователя проверяется самим хранилищем по внешнему ключу
     public void addLike(Long filmId, Long userId) {
-        getFilmById(filmId);
         filmStorage.addLike(filmId, userId);
     }
 
@@ -66,7 +196,65 @@ public class FilmService {
     }
 
     public List<Film> getPopularFilms(Integer count) {
-        return filmStorage.getPopularFilms(count == null ? 10 : count);
+        return getPopularFilms(count, LikesMode.IDS);
+    }
+
+    public List<Film> getPopularFilms(Integer count, LikesMode likesMode) {
+        return getPopularFilms(count, null, null, likesMode);
+    }
+
+    public List<Film> searchFilms(String query, Set<FilmSearchField> fields, Integer limit, LikesMode likesMode) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Параметр query не может быть пустым");
+        }
+        int size = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+        if (size < 1 || size > MAX_SEARCH_LIMIT) {
+            throw new IllegalArgumentException("Параметр limit должен быть в диапазоне от 1 до " + MAX_SEARCH_LIMIT);
+        }
+        return filmStorage.searchFilms(query, fields, size, likesMode);
+    }
+
+    public List<Film> getPopularFilms(Integer count, Long genreId, Integer year, LikesMode likesMode) {
+        return filmStorage.getPopularFilms(validatePopularCount(count), genreId, year, likesMode);
+    }
+
+    public int validatePopularCount(Integer count) {
+        int size = count == null ? DEFAULT_POPULAR_COUNT : count;
+        if (size < 1 || size > MAX_POPULAR_COUNT) {
+            throw new IllegalArgumentException("Параметр count должен быть в диапазоне от 1 до " + MAX_POPULAR_COUNT);
+        }
+        return size;
+    }
+
+    private void validateBatchSize(List<?> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Пакет не может быть пустым");
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Размер пакета не может превышать " + MAX_BATCH_SIZE);
+        }
+    }
+
+    // Возвращает текст ошибки или null, если фильм корректен
+    private String validateBatchItem(Film film) {
+        if (film == null) {
+            return "Фильм не задан";
+        }
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        try {
+            validateFilm(film);
+            validateMpaExists(film);
+            validateGenresExist(film);
+            return null;
+        } catch (IllegalArgumentException | NoSuchElementException e) {
+            return e.getMessage();
+        }
     }
 
     private void validateFilm(Film film) {
@@ -79,7 +267,7 @@ public class FilmService {
         if (film.getReleaseDate() == null || film.getReleaseDate().isBefore(MIN_RELEASE_DATE)) {
             throw new IllegalArgumentException("Дата релиза не может быть раньше 28 декабря 1895 года");
         }
-        if (film.getDuration() <= 0) {
+        if (film.getDuration() == null || film.getDuration() <= 0) {
             throw new IllegalArgumentException("Продолжительность фильма должна быть положительной");
         }
         if (film.getMpa() == null) {
@@ -90,10 +278,16 @@ public class FilmService {
         }
     }
 
+    public void validateFilmExists(Long id) {
+        if (!filmStorage.existsById(id)) {
+            throw new NoSuchElementException("Фильм с id " + id + " не найден");
+        }
+    }
+
     private void validateMpaExists(Film film) {
-        mpaDbStorage.getMpaById(film.getMpa().getId())
-                .orElseThrow(() -> new NoSuchElementException(
-                        "Рейтинг MPA с id " + film.getMpa().getId() + " не найден"));
+        if (!mpaDbStorage.existsById(film.getMpa().getId())) {
+            throw new NoSuchElementException("Рейтинг MPA с id " + film.getMpa().getId() + " не найден");
+        }
     }
 
     private void validateGenresExist(Film film) {
@@ -101,16 +295,14 @@ public class FilmService {
             return;
         }
 
-        List<Genre> allGenres = genreDbStorage.getAllGenres();
-        Set<Long> existingGenreIds = allGenres.stream()
-                .map(Genre::getId)
-                .collect(Collectors.toSet());
-
         for (Genre genre : film.getGenres()) {
-            if (!existingGenreIds.contains(genre.getId())) {
+            if (!genreDbStorage.existsById(genre.getId())) {
+                Set<Long> existingGenreIds = genreDbStorage.getAllGenres().stream()
+                        .map(Genre::getId)
+                        .collect(Collectors.toSet());
                 throw new NoSuchElementException(
                         "Жанр с id " + genre.getId() + " не найден. Доступные ID: " + existingGenreIds);
             }
         }
     }
-}
\ No newline at end of file
+}
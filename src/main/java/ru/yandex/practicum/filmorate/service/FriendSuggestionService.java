@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.index.TwoHopCounter;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Рекомендации друзей: пользователи, которых нет в друзьях, ранжируются по числу общих друзей.
+// Считаются обходом графа на два шага от пользователя с примитивным счетчиком вместо SQL-соединений.
+@Service
+@Slf4j
+public class FriendSuggestionService {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    private final UserStorage userStorage;
+    private final ForkJoinPool pool;
+    private final TwoHopCounter twoHopCounter;
+
+    // Отранжированные id рекомендаций (не больше MAX_LIMIT) по id пользователя;
+    // при переполнении вытесняются давно не запрашивавшиеся пользователи
+    private final Cache<Long, long[]> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FriendSuggestionService(@Qualifier("userDbStorage") UserStorage userStorage,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${filmorate.friend-suggestions.max-expansion:200000}") int maxExpansion,
+                                   @Value("${filmorate.friend-suggestions.parallel-threshold:256}") int parallelThreshold,
+                                   @Value("${filmorate.friend-suggestions.threads:4}") int threads,
+                                   @Value("${filmorate.friend-suggestions.cache-size:10000}") int maxCachedUsers) {
+        this.userStorage = userStorage;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .recordStats()
+                .build(), "friend-suggestions");
+        this.pool = new ForkJoinPool(threads);
+        this.twoHopCounter = new TwoHopCounter(pool, maxExpansion, parallelThreshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public List<User> getSuggestions(long userId, int limit) {
+        long[] ranked = getRankedIds(userId);
+        return userStorage.getUsersByIds(ranked.length > limit ? Arrays.copyOf(ranked, limit) : ranked);
+    }
+
+    // Дружба userId -> friendId меняет два шага обхода у самого userId и у всех, у кого он в друзьях
+    public void friendshipChanged(long userId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(userId);
+        for (long followerId : userStorage.getFollowerIds(userId)) {
+            cache.invalidate(followerId);
+        }
+    }
+
+    // Удаленный пользователь мог быть в двух шагах от кого угодно, поэтому кэш сбрасывается целиком
+    public void userDeleted(long userId) {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private long[] getRankedIds(long userId) {
+        long[] cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = invalidations.get();
+        long[] ranked = computeRankedIds(userId);
+        // Если во время расчета граф поменялся, результат мог устареть - не кэшируем его
+        if (invalidations.get() == version) {
+            cache.put(userId, ranked);
+        }
+        return ranked;
+    }
+
+    private long[] computeRankedIds(long userId) {
+        long[] friends = userStorage.getFriendIds(userId);
+        LongIntCounter counter = twoHopCounter.count(friends, userStorage::getFriendIds,
+                candidateId -> candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0);
+
+        log.debug("Рекомендации друзей для пользователя {}: друзей {}, кандидатов {}",
+                userId, friends.length, counter.size());
+        return counter.top(MAX_LIMIT);
+    }
+}
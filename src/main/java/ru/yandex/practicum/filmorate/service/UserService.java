@@ -1,14 +1,30 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.BatchReport;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikesMode;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -17,11 +33,23 @@ public class UserService {
 
     @Qualifier("userDbStorage")
     private final UserStorage userStorage;
+    private final FriendSuggestionService friendSuggestionService;
+    private final FilmRecommendationService filmRecommendationService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    private static final int MAX_BATCH_SIZE = 100_000;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
 
     public List<User> getAllUsers() {
         return userStorage.getAllUsers();
     }
 
+    public CursorPage<User> getUsers(Long after, Integer limit) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        return CursorPage.of(userStorage.getUsers(after, pageSize), pageSize, User::getId);
+    }
+
     public User getUserById(Long id) {
         return userStorage.getUserById(id)
                 .orElseThrow(() -> new NoSuchElementException("Пользователь с id " + id + " не найден"));
@@ -32,6 +60,36 @@ public class UserService {
         return userStorage.createUser(user);
     }
 
+    public BatchReport createUsers(List<User> users) {
+        if (users == null || users.isEmpty()) {
+            throw new IllegalArgumentException("Пакет не может быть пустым");
+        }
+        if (users.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Размер пакета не может превышать " + MAX_BATCH_SIZE
+                    + ", для больших импортов используйте application/x-ndjson");
+        }
+        UserImport userImport = new UserImport();
+        users.forEach(userImport::add);
+        return userImport.finish();
+    }
+
+    // Потоковый импорт: по одному пользователю в JSON на строку, запись чанками по мере чтения
+    public BatchReport importUsers(BufferedReader reader) throws IOException {
+        UserImport userImport = new UserImport();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                userImport.add(objectMapper.readValue(line, User.class));
+            } catch (JsonProcessingException e) {
+                userImport.addFailure("Некорректный JSON: " + e.getOriginalMessage());
+            }
+        }
+        return userImport.finish();
+    }
+
     public User updateUser(User user) {
         validateUser(user);
         getUserById(user.getId()); // Проверяем существование пользователя
@@ -40,24 +98,23 @@ public class UserService {
 
     public void deleteUser(Long id) {
         userStorage.deleteUser(id);
+        friendSuggestionService.userDeleted(id);
     }
 
+    // Существование пользователей проверяется самим хранилищем по внешнему ключу
     public void addFriend(Long userId, Long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-
         // Проверяем, не пытается ли пользователь добавить самого себя в друзья
         if (userId.equals(friendId)) {
             throw new IllegalArgumentException("Пользователь не может добавить самого себя в друзья");
         }
 
         userStorage.addFriend(userId, friendId);
+        friendSuggestionService.friendshipChanged(userId);
     }
 
     public void removeFriend(Long userId, Long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
         userStorage.removeFriend(userId, friendId);
+        friendSuggestionService.friendshipChanged(userId);
     }
 
     public List<User> getFriends(Long userId) {
@@ -71,6 +128,148 @@ public class UserService {
         return userStorage.getCommonFriends(userId, otherUserId);
     }
 
+    public List<User> getFriendSuggestions(Long userId, Integer limit) {
+        int size = limit == null ? FriendSuggestionService.DEFAULT_LIMIT : limit;
+        if (size < 1 || size > FriendSuggestionService.MAX_LIMIT) {
+            throw new IllegalArgumentException("Параметр limit должен быть в диапазоне от 1 до "
+                    + FriendSuggestionService.MAX_LIMIT);
+        }
+        getUserById(userId);
+        return friendSuggestionService.getSuggestions(userId, size);
+    }
+
+    public List<Film> getRecommendations(Long userId, Integer limit, LikesMode likesMode) {
+        int size = limit == null ? FilmRecommendationService.DEFAULT_LIMIT : limit;
+        if (size < 1 || size > FilmRecommendationService.MAX_LIMIT) {
+            throw new IllegalArgumentException("Параметр limit должен быть в диапазоне от 1 до "
+                    + FilmRecommendationService.MAX_LIMIT);
+        }
+        getUserById(userId);
+        return filmRecommendationService.getRecommendations(userId, size, likesMode);
+    }
+
+    // Состояние одного импорта: проверка дубликатов по всему импорту и запись чанками
+    private final class UserImport {
+        private final long start = System.nanoTime();
+        private final List<BatchItemResult> results = new ArrayList<>();
+        private final Set<String> seenEmails = new HashSet<>();
+        private final Set<String> seenLogins = new HashSet<>();
+        private final List<User> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        private final List<Integer> chunkIndexes = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        private int nextIndex;
+
+        void add(User user) {
+            int index = nextIndex++;
+            String error = validateImportedUser(user);
+            if (error != null) {
+                results.add(BatchItemResult.failure(index, null, error));
+                return;
+            }
+            validateUser(user);
+            chunk.add(user);
+            chunkIndexes.add(index);
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void addFailure(String error) {
+            results.add(BatchItemResult.failure(nextIndex++, null, error));
+        }
+
+        BatchReport finish() {
+            flush();
+            BatchReport report = BatchReport.of(results, start);
+            log.info("Импорт пользователей завершен: {} из {} за {} мс ({} строк/с)",
+                    report.getSucceeded(), report.getTotal(), report.getElapsedMs(),
+                    Math.round(report.getRowsPerSecond()));
+            return report;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            Set<String> emails = new HashSet<>();
+            Set<String> logins = new HashSet<>();
+            chunk.forEach(user -> {
+                emails.add(user.getEmail());
+                logins.add(user.getLogin());
+            });
+            Set<String> takenEmails = userStorage.getExistingEmails(emails);
+            Set<String> takenLogins = userStorage.getExistingLogins(logins);
+
+            List<User> toInsert = new ArrayList<>(chunk.size());
+            List<Integer> toInsertIndexes = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                User user = chunk.get(i);
+                String error = checkDuplicate(user, takenEmails, takenLogins);
+                if (error != null) {
+                    results.add(BatchItemResult.failure(chunkIndexes.get(i), null, error));
+                    continue;
+                }
+                seenEmails.add(user.getEmail());
+                seenLogins.add(user.getLogin());
+                toInsert.add(user);
+                toInsertIndexes.add(chunkIndexes.get(i));
+            }
+            insert(toInsert, toInsertIndexes);
+
+            chunk.clear();
+            chunkIndexes.clear();
+        }
+
+        private String checkDuplicate(User user, Set<String> takenEmails, Set<String> takenLogins) {
+            if (takenEmails.contains(user.getEmail()) || seenEmails.contains(user.getEmail())) {
+                return "Пользователь с email " + user.getEmail() + " уже существует";
+            }
+            if (takenLogins.contains(user.getLogin()) || seenLogins.contains(user.getLogin())) {
+                return "Пользователь с логином " + user.getLogin() + " уже существует";
+            }
+            return null;
+        }
+
+        private void insert(List<User> users, List<Integer> indexes) {
+            try {
+                userStorage.createUsers(users);
+                for (int i = 0; i < users.size(); i++) {
+                    results.add(BatchItemResult.success(indexes.get(i), users.get(i).getId()));
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Дубликат появился параллельно с импортом - чанк откатился, пишем его построчно
+                log.warn("Пакетная вставка пользователей не удалась ({}), выполняется построчная вставка",
+                        e.getMessage());
+                for (int i = 0; i < users.size(); i++) {
+                    User user = users.get(i);
+                    try {
+                        user.setId(null);
+                        results.add(BatchItemResult.success(indexes.get(i), userStorage.createUser(user).getId()));
+                    } catch (DataIntegrityViolationException rowError) {
+                        results.add(BatchItemResult.failure(indexes.get(i), null,
+                                "Пользователь с email " + user.getEmail() + " или логином "
+                                        + user.getLogin() + " уже существует"));
+                    }
+                }
+            }
+        }
+    }
+
+    // Возвращает текст ошибки или null, если пользователь корректен
+    private String validateImportedUser(User user) {
+        if (user == null) {
+            return "Пользователь не задан";
+        }
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
     private void validateUser(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
@@ -1,17 +1,48 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearchField;
+import ru.yandex.practicum.filmorate.model.LikesMode;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface FilmStorage {
-    List<Film> getAllFilms();
-    Optional<Film> getFilmById(Long id);
+    List<Film> getAllFilms(LikesMode likesMode);
+    List<Film> getFilms(Long afterId, int limit, LikesMode likesMode);
+    Optional<Film> getFilmById(Long id, LikesMode likesMode);
+    boolean existsById(Long id);
     Film createFilm(Film film);
     Film updateFilm(Film film);
+    List<Film> createFilms(List<Film> films);
+    List<Film> updateFilms(List<Film> films);
     void deleteFilm(Long id);
     void addLike(Long filmId, Long userId);
     void removeLike(Long filmId, Long userId);
-    List<Film> getPopularFilms(Integer count);
+    List<Film> getPopularFilms(Integer count, Long genreId, Integer year, LikesMode likesMode);
+    List<Film> getFilmsByIds(List<Long> ids, LikesMode likesMode);
+    List<Film> searchFilms(String query, Set<FilmSearchField> fields, int limit, LikesMode likesMode);
+    long[] getLikedFilmIds(Long userId);
+    long[] getFilmLikerIds(Long filmId);
+
+    default List<Film> getAllFilms() {
+        return getAllFilms(LikesMode.IDS);
+    }
+
+    default List<Film> getFilms(Long afterId, int limit) {
+        return getFilms(afterId, limit, LikesMode.IDS);
+    }
+
+    default Optional<Film> getFilmById(Long id) {
+        return getFilmById(id, LikesMode.IDS);
+    }
+
+    default List<Film> getPopularFilms(Integer count, LikesMode likesMode) {
+        return getPopularFilms(count, null, null, likesMode);
+    }
+
+    default List<Film> getPopularFilms(Integer count) {
+        return getPopularFilms(count, LikesMode.IDS);
+    }
 }
\ No newline at end of file
@@ -2,17 +2,26 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
     List<User> getAllUsers();
+    List<User> getUsers(Long afterId, int limit);
     Optional<User> getUserById(Long id);
     User createUser(User user);
     User updateUser(User user);
+    List<User> createUsers(List<User> users);
+    Set<String> getExistingEmails(Collection<String> emails);
+    Set<String> getExistingLogins(Collection<String> logins);
     void deleteUser(Long id);
     List<User> getFriends(Long userId);
     void addFriend(Long userId, Long friendId);
     void removeFriend(Long userId, Long friendId);
     List<User> getCommonFriends(Long userId, Long otherUserId);
+    long[] getFriendIds(Long userId);
+    long[] getFollowerIds(Long userId);
+    List<User> getUsersByIds(long[] ids);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Откладывает обновление структур в памяти до фиксации текущей транзакции, чтобы индексы
+// не увидели изменений, которые затем откатятся. Вне транзакции действие выполняется сразу.
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+// Кэш фильмов и пользователей по id с вытеснением по размеру (W-TinyLFU) и по времени жизни.
+// Фильм хранится в двух вариантах: без id лайков (со счетчиком likes_count) и с полным списком лайков.
+// Хранилища сбрасывают записи при каждом изменении; сброс повторяется после завершения транзакции,
+// чтобы читатель, успевший загрузить старые данные до фиксации, не оставил их в кэше.
+// Наружу отдаются копии: модели изменяемые, а сервисы и контроллеры могут их править.
+@Component
+@Slf4j
+public class EntityCache {
+
+    private final boolean enabled;
+    private final Cache<Long, Film> films;
+    private final Cache<Long, Film> filmsWithLikes;
+    private final Cache<Long, User> users;
+
+    public EntityCache(MeterRegistry meterRegistry,
+                       @Value("${filmorate.entity-cache.enabled:true}") boolean enabled,
+                       @Value("${filmorate.entity-cache.films.max-size:10000}") long maxFilms,
+                       @Value("${filmorate.entity-cache.users.max-size:10000}") long maxUsers,
+                       @Value("${filmorate.entity-cache.ttl-ms:300000}") long ttlMs) {
+        this.enabled = enabled;
+        this.films = CaffeineCacheMetrics.monitor(meterRegistry, build(maxFilms, ttlMs), "films");
+        this.filmsWithLikes = CaffeineCacheMetrics.monitor(meterRegistry, build(maxFilms, ttlMs), "films-with-likes");
+        this.users = CaffeineCacheMetrics.monitor(meterRegistry, build(maxUsers, ttlMs), "users");
+        log.info("Кэш сущностей {}: фильмов до {}, пользователей до {}, время жизни {} мс",
+                enabled ? "включен" : "выключен", maxFilms, maxUsers, ttlMs);
+    }
+
+    private static <V> Cache<Long, V> build(long maxSize, long ttlMs) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    // loader возвращает null, если фильма нет; отсутствие не кэшируется
+    public Optional<Film> getFilm(long id, boolean withLikes, Function<Long, Film> loader) {
+        if (!enabled) {
+            return Optional.ofNullable(loader.apply(id));
+        }
+        Film film = (withLikes ? filmsWithLikes : films).get(id, loader);
+        return Optional.ofNullable(film).map(EntityCache::copyOf);
+    }
+
+    public Optional<User> getUser(long id, Function<Long, User> loader) {
+        if (!enabled) {
+            return Optional.ofNullable(loader.apply(id));
+        }
+        User user = users.get(id, loader);
+        return Optional.ofNullable(user).map(EntityCache::copyOf);
+    }
+
+    public void filmChanged(long filmId) {
+        invalidate(() -> {
+            films.invalidate(filmId);
+            filmsWithLikes.invalidate(filmId);
+        });
+    }
+
+    public void filmsChanged(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(filmIds);
+        invalidate(() -> {
+            films.invalidateAll(ids);
+            filmsWithLikes.invalidateAll(ids);
+        });
+    }
+
+    // Изменились данные, которые входят во все фильмы сразу: счетчики лайков, названия жанров или рейтингов
+    public void allFilmsChanged() {
+        invalidate(() -> {
+            films.invalidateAll();
+            filmsWithLikes.invalidateAll();
+        });
+    }
+
+    public void userChanged(long userId) {
+        invalidate(() -> users.invalidate(userId));
+    }
+
+    private static void invalidate(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static Film copyOf(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa() == null ? null : copyOf(film.getMpa()));
+        if (film.getGenres() != null) {
+            List<Genre> genres = new ArrayList<>(film.getGenres().size());
+            for (Genre genre : film.getGenres()) {
+                Genre genreCopy = new Genre();
+                genreCopy.setId(genre.getId());
+                genreCopy.setName(genre.getName());
+                genres.add(genreCopy);
+            }
+            copy.setGenres(genres);
+        }
+        // LongIdSet неизменяемый, его можно разделять между копиями
+        copy.setLikes(film.getLikes());
+        copy.setLikesCount(film.getLikesCount());
+        return copy;
+    }
+
+    private static MpaRating copyOf(MpaRating mpa) {
+        MpaRating copy = new MpaRating();
+        copy.setId(mpa.getId());
+        copy.setName(mpa.getName());
+        copy.setDescription(mpa.getDescription());
+        return copy;
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        return copy;
+    }
+}
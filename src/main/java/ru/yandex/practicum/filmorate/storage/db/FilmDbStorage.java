@@ -4,20 +4,31 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearchField;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikesMode;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.db.mapper.FilmDetailsMapper;
 import ru.yandex.practicum.filmorate.storage.db.mapper.FilmMapper;
-import ru.yandex.practicum.filmorate.storage.db.mapper.GenreMapper;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
@@ -30,40 +41,90 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    // Фильм, рейтинг MPA, жанры и (по запросу) id лайкнувших пользователей за одно обращение к БД
+    private static final String FILM_COLUMNS_SQL = "SELECT f.*, m.name as mpa_name, " +
+            "m.description as mpa_description, " +
+            "(SELECT ARRAY_AGG(g.id ORDER BY g.id) FROM film_genre fg JOIN genres g ON fg.genre_id = g.id " +
+            "WHERE fg.film_id = f.id) AS genre_ids, " +
+            "(SELECT ARRAY_AGG(g.name ORDER BY g.id) FROM film_genre fg JOIN genres g ON fg.genre_id = g.id " +
+            "WHERE fg.film_id = f.id) AS genre_names";
+    private static final String FILM_FROM_SQL = " FROM films f " +
+            "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id " +
+            "WHERE f.id = ?";
+    private static final String FILM_SQL = FILM_COLUMNS_SQL + FILM_FROM_SQL;
+    private static final String FILM_WITH_LIKES_SQL = FILM_COLUMNS_SQL + ", " +
+            "(SELECT ARRAY_AGG(fl.user_id ORDER BY fl.user_id) FROM film_likes fl WHERE fl.film_id = f.id) " +
+            "AS like_ids" + FILM_FROM_SQL;
+
     private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final LikeGraph likeGraph;
+    private final FilmSearchIndex searchIndex;
+    private final ResourceVersions resourceVersions;
+    private final LikeWriteBehindBuffer likeWriteBehindBuffer;
+    private final MultiIdLoader multiIdLoader;
+    private final FilmHydrator filmHydrator;
+    private final EntityCache entityCache;
     private final FilmMapper filmMapper = new FilmMapper();
+    private final FilmDetailsMapper filmDetailsMapper = new FilmDetailsMapper(false);
+    private final FilmDetailsMapper filmWithLikesMapper = new FilmDetailsMapper(true);
 
     @Override
-    public List<Film> getAllFilms() {
+    public List<Film> getAllFilms(LikesMode likesMode) {
         String sql = "SELECT f.*, m.name as mpa_name, m.description as mpa_description " +
                 "FROM films f " +
                 "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id " +
                 "ORDER BY f.id";
 
         List<Film> films = jdbcTemplate.query(sql, filmMapper);
-        loadGenresForFilms(films);
-        loadLikesForFilms(films);
+        filmHydrator.hydrate(films, likesMode);
 
         return films;
     }
 
     @Override
-    public Optional<Film> getFilmById(Long id) {
+    public List<Film> getFilms(Long afterId, int limit, LikesMode likesMode) {
         String sql = "SELECT f.*, m.name as mpa_name, m.description as mpa_description " +
                 "FROM films f " +
                 "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id " +
-                "WHERE f.id = ?";
+                "WHERE f.id > ? " +
+                "ORDER BY f.id " +
+                "LIMIT ?";
 
-        List<Film> films = jdbcTemplate.query(sql, filmMapper, id);
-        if (films.isEmpty()) {
-            return Optional.empty();
+        List<Film> films = jdbcTemplate.query(sql, filmMapper, afterId == null ? 0L : afterId, limit);
+        filmHydrator.hydrate(films, likesMode);
+
+        return films;
+    }
+
+    @Override
+    public Optional<Film> getFilmById(Long id, LikesMode likesMode) {
+        boolean withLikes = likesMode == LikesMode.IDS;
+        Optional<Film> film = entityCache.getFilm(id, withLikes, filmId -> loadFilm(filmId, withLikes));
+        if (!withLikes) {
+            film.ifPresent(found -> FilmHydrator.applyLikesWithoutIds(found, likesMode));
         }
+        return film;
+    }
 
-        Film film = films.get(0);
-        loadGenresForFilm(film);
-        loadLikesForFilm(film);
+    private Film loadFilm(Long id, boolean withLikes) {
+        List<Film> films = jdbcTemplate.query(withLikes ? FILM_WITH_LIKES_SQL : FILM_SQL,
+                withLikes ? filmWithLikesMapper : filmDetailsMapper, id);
+        return films.isEmpty() ? null : films.get(0);
+    }
 
-        return Optional.of(film);
+    // Положительный ответ берется из индекса популярности, где есть все фильмы этого экземпляра;
+    // в базу идем только при промахе, чтобы не пропустить фильм, добавленный в обход приложения
+    @Override
+    public boolean existsById(Long id) {
+        if (id == null) {
+            return false;
+        }
+        if (popularityIndex.contains(id)) {
+            return true;
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS(SELECT 1 FROM films WHERE id = ?)", Boolean.class, id));
     }
 
     @Override
@@ -88,6 +149,11 @@ public class FilmDbStorage implements FilmStorage {
 
         // Сохраняем жанры
         saveGenresForFilm(film);
+        AfterCommit.run(() -> {
+            popularityIndex.filmCreated(film);
+            searchIndex.filmSaved(film);
+            resourceVersions.filmChanged(id);
+        });
 
         log.info("Создан новый фильм с id: {}", id);
         return film;
@@ -113,139 +179,271 @@ public class FilmDbStorage implements FilmStorage {
         // Обновляем жанры
         deleteGenresForFilm(film.getId());
         saveGenresForFilm(film);
+        AfterCommit.run(() -> {
+            popularityIndex.filmUpdated(film);
+            searchIndex.filmSaved(film);
+            resourceVersions.filmChanged(film.getId());
+            entityCache.filmChanged(film.getId());
+        });
 
         log.info("Обновлен фильм с id: {}", film.getId());
         return film;
     }
 
+    @Override
+    @Transactional
+    public List<Film> createFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        String sql = "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setDate(3, film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null);
+                    ps.setInt(4, film.getDuration());
+                    ps.setObject(5, film.getMpa() != null ? film.getMpa().getId() : null);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next()) {
+                        films.get(i++).setId(keys.getLong(1));
+                    }
+                    if (i != films.size()) {
+                        throw new IllegalStateException("Получено " + i + " сгенерированных id вместо " + films.size());
+                    }
+                }
+            }
+            return null;
+        });
+
+        saveGenresForFilms(films);
+        AfterCommit.run(() -> films.forEach(film -> {
+            popularityIndex.filmCreated(film);
+            searchIndex.filmSaved(film);
+            resourceVersions.filmChanged(film.getId());
+        }));
+
+        log.info("Пакетно создано фильмов: {}", films.size());
+        return films;
+    }
+
+    @Override
+    @Transactional
+    public List<Film> updateFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, " +
+                "mpa_rating_id = ? WHERE id = ?";
+
+        int[] rowsUpdated = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Film film = films.get(i);
+                ps.setString(1, film.getName());
+                ps.setString(2, film.getDescription());
+                ps.setDate(3, film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null);
+                ps.setInt(4, film.getDuration());
+                ps.setObject(5, film.getMpa() != null ? film.getMpa().getId() : null);
+                ps.setLong(6, film.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return films.size();
+            }
+        });
+
+        List<Film> updated = new ArrayList<>(films.size());
+        for (int i = 0; i < films.size(); i++) {
+            if (rowsUpdated[i] != 0) {
+                updated.add(films.get(i));
+            }
+        }
+
+        List<Object[]> deleteArgs = new ArrayList<>(updated.size());
+        updated.forEach(film -> deleteArgs.add(new Object[]{film.getId()}));
+        jdbcTemplate.batchUpdate("DELETE FROM film_genre WHERE film_id = ?", deleteArgs);
+        saveGenresForFilms(updated);
+        AfterCommit.run(() -> updated.forEach(film -> {
+            popularityIndex.filmUpdated(film);
+            searchIndex.filmSaved(film);
+            resourceVersions.filmChanged(film.getId());
+            entityCache.filmChanged(film.getId());
+        }));
+
+        log.info("Пакетно обновлено фильмов: {} из {}", updated.size(), films.size());
+        return updated;
+    }
+
     @Override
     public void deleteFilm(Long id) {
         String sql = "DELETE FROM films WHERE id = ?";
         jdbcTemplate.update(sql, id);
+        AfterCommit.run(() -> {
+            popularityIndex.filmDeleted(id);
+            likeGraph.filmDeleted(id);
+            searchIndex.filmDeleted(id);
+            resourceVersions.filmDeleted(id);
+            entityCache.filmChanged(id);
+        });
         log.info("Удален фильм с id: {}", id);
     }
 
     @Override
+    @Transactional
     public void addLike(Long filmId, Long userId) {
-        String sql = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+        if (likeWriteBehindBuffer.isEnabled()) {
+            requireLikeParties(filmId, userId);
+            likeWriteBehindBuffer.addLike(filmId, userId);
+            return;
+        }
+        // Повторный лайк ничего не меняет; счетчик увеличивается, только если строка действительно вставлена
+        String sql = "MERGE INTO film_likes fl " +
+                "USING (SELECT CAST(? AS BIGINT) AS film_id, CAST(? AS BIGINT) AS user_id) s " +
+                "ON fl.film_id = s.film_id AND fl.user_id = s.user_id " +
+                "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)";
+        try {
+            if (jdbcTemplate.update(sql, filmId, userId) == 0) {
+                return;
+            }
+        } catch (DuplicateKeyException e) {
+            // Тот же лайк одновременно вставил параллельный MERGE - результат тот же, что и у повтора
+            return;
+        } catch (DataIntegrityViolationException e) {
+            throw MissingReferences.translate(e, jdbcTemplate,
+                    MissingReferences.film(filmId), MissingReferences.user(userId));
+        }
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?", filmId);
+        AfterCommit.run(() -> {
+            popularityIndex.likeAdded(filmId);
+            likeGraph.likeAdded(filmId, userId);
+            resourceVersions.filmChanged(filmId);
+            entityCache.filmChanged(filmId);
+        });
         log.info("Пользователь {} поставил лайк фильму {}", userId, filmId);
     }
 
     @Override
+    @Transactional
     public void removeLike(Long filmId, Long userId) {
+        if (likeWriteBehindBuffer.isEnabled()) {
+            requireLikeParties(filmId, userId);
+            likeWriteBehindBuffer.removeLike(filmId, userId);
+            return;
+        }
         String sql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+        if (jdbcTemplate.update(sql, filmId, userId) == 0) {
+            // Лайка не было: отличаем "уже удален" от несуществующего фильма или пользователя
+            MissingReferences.requireExisting(jdbcTemplate,
+                    MissingReferences.film(filmId), MissingReferences.user(userId));
+        } else {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ?", filmId);
+            AfterCommit.run(() -> {
+                popularityIndex.likeRemoved(filmId);
+                likeGraph.likeRemoved(filmId, userId);
+                resourceVersions.filmChanged(filmId);
+                entityCache.filmChanged(filmId);
+            });
+        }
         log.info("Пользователь {} удалил лайк с фильма {}", userId, filmId);
     }
 
     @Override
-    public List<Film> getPopularFilms(Integer count) {
-        String sql = "SELECT f.*, m.name as mpa_name, m.description as mpa_description, " +
-                "COUNT(fl.user_id) as likes_count " +
-                "FROM films f " +
-                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id " +
-                "LEFT JOIN film_likes fl ON f.id = fl.film_id " +
-                "GROUP BY f.id, m.name, m.description " +
-                "ORDER BY likes_count DESC " +
-                "LIMIT ?";
-
-        List<Film> films = jdbcTemplate.query(sql, filmMapper, count);
-        loadGenresForFilms(films);
-        loadLikesForFilms(films);
-
-        return films;
+    public List<Film> getPopularFilms(Integer count, Long genreId, Integer year, LikesMode likesMode) {
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count, genreId, year), likesMode);
     }
 
-    private void loadGenresForFilm(Film film) {
-        String sql = "SELECT g.id, g.name FROM genres g " +
-                "JOIN film_genre fg ON g.id = fg.genre_id " +
-                "WHERE fg.film_id = ? " +
-                "ORDER BY g.id";
-
-        List<Genre> genres = jdbcTemplate.query(sql, new GenreMapper(), film.getId());
-        film.setGenres(genres);
+    @Override
+    public List<Film> searchFilms(String query, Set<FilmSearchField> fields, int limit, LikesMode likesMode) {
+        return getFilmsByIds(searchIndex.search(query, fields, limit), likesMode);
     }
 
-    private void loadGenresForFilms(List<Film> films) {
-        if (films.isEmpty()) return;
-
-        String filmIds = films.stream()
-                .map(Film::getId)
-                .map(String::valueOf)
-                .collect(Collectors.joining(","));
-
-        String sql = String.format(
-                "SELECT fg.film_id, g.id, g.name " +
-                        "FROM film_genre fg " +
-                        "JOIN genres g ON fg.genre_id = g.id " +
-                        "WHERE fg.film_id IN (%s) " +
-                        "ORDER BY fg.film_id, g.id", filmIds);
-
-        Map<Long, List<Genre>> genresByFilmId = new HashMap<>();
-        jdbcTemplate.query(sql, rs -> {
-            Long filmId = rs.getLong("film_id");
-            Genre genre = new Genre();
-            genre.setId(rs.getLong("id"));
-            genre.setName(rs.getString("name"));
-
-            genresByFilmId.computeIfAbsent(filmId, k -> new ArrayList<>()).add(genre);
-        });
-
-        films.forEach(film ->
-                film.setGenres(genresByFilmId.getOrDefault(film.getId(), new ArrayList<>())));
+    @Override
+    public long[] getLikedFilmIds(Long userId) {
+        return likeGraph.getUserFilms(userId);
     }
 
-    private void loadLikesForFilm(Film film) {
-        String sql = "SELECT user_id FROM film_likes WHERE film_id = ?";
-        List<Long> likes = jdbcTemplate.queryForList(sql, Long.class, film.getId());
-        film.setLikes(new HashSet<>(likes));
+    @Override
+    public long[] getFilmLikerIds(Long filmId) {
+        return likeGraph.getFilmUsers(filmId);
     }
 
-    private void loadLikesForFilms(List<Film> films) {
-        if (films.isEmpty()) return;
+    // Возвращает фильмы в порядке переданных id
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids, LikesMode likesMode) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        String filmIds = films.stream()
-                .map(Film::getId)
-                .map(String::valueOf)
-                .collect(Collectors.joining(","));
+        String sql = "SELECT f.*, m.name as mpa_name, m.description as mpa_description " +
+                "FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id " +
+                "WHERE f.id = ANY(?)";
 
-        String sql = String.format(
-                "SELECT film_id, user_id FROM film_likes WHERE film_id IN (%s)", filmIds);
+        Map<Long, Film> filmsById = new HashMap<>();
+        multiIdLoader.query(sql, ids, filmMapper).forEach(film -> filmsById.put(film.getId(), film));
 
-        Map<Long, Set<Long>> likesByFilmId = new HashMap<>();
-        jdbcTemplate.query(sql, rs -> {
-            Long filmId = rs.getLong("film_id");
-            Long userId = rs.getLong("user_id");
+        List<Film> films = ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        filmHydrator.hydrate(films, likesMode);
 
-            likesByFilmId.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
-        });
+        return films;
+    }
 
-        films.forEach(film ->
-                film.setLikes(likesByFilmId.getOrDefault(film.getId(), new HashSet<>())));
+    // Отложенная запись не вернет ошибку внешнего ключа, поэтому обе стороны проверяются заранее:
+    // фильм - по индексу, пользователь - по первичному ключу
+    private void requireLikeParties(Long filmId, Long userId) {
+        if (!existsById(filmId)) {
+            throw new NoSuchElementException("Фильм с id " + filmId + " не найден");
+        }
+        MissingReferences.requireExisting(jdbcTemplate, MissingReferences.user(userId));
     }
 
     private void saveGenresForFilm(Film film) {
-        if (film.getGenres() == null || film.getGenres().isEmpty()) {
+        saveGenresForFilms(List.of(film));
+    }
+
+    // Жанры всех фильмов записываются одним пакетом
+    private void saveGenresForFilms(List<Film> films) {
+        List<long[]> rows = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() == null) {
+                continue;
+            }
+            film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .forEach(genreId -> rows.add(new long[]{film.getId(), genreId}));
+        }
+        if (rows.isEmpty()) {
             return;
         }
 
-        List<Genre> uniqueGenres = film.getGenres().stream()
-                .distinct()
-                .collect(Collectors.toList());
-
         String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
 
         jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                ps.setLong(1, film.getId());
-                ps.setLong(2, uniqueGenres.get(i).getId());
+                ps.setLong(1, rows.get(i)[0]);
+                ps.setLong(2, rows.get(i)[1]);
             }
 
             @Override
             public int getBatchSize() {
-                return uniqueGenres.size();
+                return rows.size();
             }
         });
     }
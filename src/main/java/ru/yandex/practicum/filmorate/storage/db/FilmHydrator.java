@@ -0,0 +1,234 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Догружает жанры и лайки для списка фильмов. Для длинных списков загрузка жанров уходит в отдельный
+// ограниченный пул, лайки в это время читаются в вызывающем потоке, затем результат ожидается с таймаутом;
+// короткие списки загружаются последовательно в вызывающем потоке, где передача в пул дороже самих запросов.
+// Внутри транзакции все читается в вызывающем потоке: потоки пула работают на других соединениях
+// и не видят ее незакоммиченных строк.
+// Каждая загрузка делится на чанки по id через MultiIdLoader (из пула гидрации - без его собственного
+// параллелизма, чтобы один запрос не занимал соединения обоих пулов), запросы ограничены таймаутом JDBC,
+// потому что прерывание потока не останавливает уже выполняющийся запрос. Задачи пула оборачиваются
+// TaskDecorator'ами из контекста, чтобы в них действовали маршрутизация чтения и счетчик запросов.
+@Component
+@Slf4j
+public class FilmHydrator {
+
+    private static final String GENRES_SQL = "SELECT fg.film_id, g.id, g.name " +
+            "FROM film_genre fg " +
+            "JOIN genres g ON fg.genre_id = g.id " +
+            "WHERE fg.film_id = ANY(?) " +
+            "ORDER BY fg.film_id, g.id";
+    private static final String LIKES_SQL = "SELECT film_id, user_id FROM film_likes WHERE film_id = ANY(?) " +
+            "ORDER BY film_id, user_id";
+
+    private final MultiIdLoader multiIdLoader;
+    private final List<TaskDecorator> taskDecorators;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final int parallelThreshold;
+    private final Timer queueTimer;
+    private final Timer genresTimer;
+    private final Timer likesTimer;
+
+    public FilmHydrator(MultiIdLoader multiIdLoader,
+                        ObjectProvider<TaskDecorator> taskDecorators,
+                        MeterRegistry registry,
+                        @Value("${filmorate.hydration.threads:4}") int threads,
+                        @Value("${filmorate.hydration.queue-capacity:256}") int queueCapacity,
+                        @Value("${filmorate.hydration.timeout-ms:10000}") long timeoutMs,
+                        @Value("${filmorate.hydration.parallel-threshold:500}") int parallelThreshold) {
+        this.multiIdLoader = multiIdLoader;
+        this.taskDecorators = taskDecorators.orderedStream().collect(Collectors.toList());
+        this.timeoutMs = timeoutMs;
+        this.parallelThreshold = parallelThreshold;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // При заполненной очереди этап выполняется в вызывающем потоке - это естественное ограничение нагрузки
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "film-hydration-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        new ExecutorServiceMetrics(executor, "film-hydration", Tags.empty()).bindTo(registry);
+        this.queueTimer = Timer.builder("filmorate.hydration.queue")
+                .description("Время ожидания этапа гидрации в очереди пула")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.genresTimer = stageTimer(registry, "genres");
+        this.likesTimer = stageTimer(registry, "likes");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public void hydrate(List<Film> films, LikesMode likesMode) {
+        if (films.isEmpty()) {
+            return;
+        }
+        List<Long> ids = films.stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        if (likesMode != LikesMode.IDS) {
+            applyGenres(films, genresTimer.record(() -> loadGenres(ids, inTransaction)));
+            films.forEach(film -> applyLikesWithoutIds(film, likesMode));
+            return;
+        }
+
+        Map<Long, LongIdSet.Builder> likes;
+        if (films.size() < parallelThreshold || inTransaction) {
+            applyGenres(films, genresTimer.record(() -> loadGenres(ids, inTransaction)));
+            likes = likesTimer.record(() -> loadLikes(ids, inTransaction));
+        } else {
+            Future<Map<Long, List<Genre>>> genres = submit(genresTimer, () -> loadGenres(ids, true));
+            try {
+                likes = likesTimer.record(() -> loadLikes(ids, false));
+            } catch (RuntimeException e) {
+                genres.cancel(true);
+                throw e;
+            }
+            applyGenres(films, await(genres));
+        }
+        films.forEach(film -> {
+            LongIdSet.Builder filmLikes = likes.get(film.getId());
+            film.setLikes(filmLikes == null ? LongIdSet.empty() : filmLikes.build());
+            film.setLikesCount(null);
+        });
+    }
+
+    // Счетчик уже прочитан маппером из films.likes_count, поэтому к film_likes не обращаемся
+    static void applyLikesWithoutIds(Film film, LikesMode likesMode) {
+        film.setLikes(null);
+        if (likesMode == LikesMode.NONE) {
+            film.setLikesCount(null);
+        }
+    }
+
+    // FutureTask выполняется в потоке пула, поэтому cancel(true) прерывает именно его
+    private <T> Future<T> submit(Timer stageTimer, Callable<T> stage) {
+        long submitted = System.nanoTime();
+        FutureTask<T> future = new FutureTask<>(() -> {
+            long started = System.nanoTime();
+            queueTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+            try {
+                return stage.call();
+            } finally {
+                stageTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        });
+        Runnable task = future;
+        for (TaskDecorator decorator : taskDecorators) {
+            task = decorator.decorate(task);
+        }
+        executor.execute(task);
+        return future;
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new QueryTimeoutException("Загрузка данных фильмов не завершилась за " + timeoutMs + " мс", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new QueryTimeoutException("Загрузка данных фильмов прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Map<Long, List<Genre>> loadGenres(List<Long> ids, boolean serial) {
+        Map<Long, List<Genre>> genresByFilmId = new HashMap<>();
+        queryChunks(GENRES_SQL, ids, serial, rs -> {
+            Map<Long, List<Genre>> chunkGenres = new HashMap<>();
+            while (rs.next()) {
+                Long filmId = rs.getLong("film_id");
+                Genre genre = new Genre();
+                genre.setId(rs.getLong("id"));
+                genre.setName(rs.getString("name"));
+
+                chunkGenres.computeIfAbsent(filmId, k -> new ArrayList<>()).add(genre);
+            }
+            return chunkGenres;
+        }).forEach(genresByFilmId::putAll);
+        return genresByFilmId;
+    }
+
+    private Map<Long, LongIdSet.Builder> loadLikes(List<Long> ids, boolean serial) {
+        Map<Long, LongIdSet.Builder> likesByFilmId = new HashMap<>();
+        queryChunks(LIKES_SQL, ids, serial, rs -> {
+            Map<Long, LongIdSet.Builder> chunkLikes = new HashMap<>();
+            while (rs.next()) {
+                chunkLikes.computeIfAbsent(rs.getLong("film_id"), k -> LongIdSet.builder())
+                        .add(rs.getLong("user_id"));
+            }
+            return chunkLikes;
+        }).forEach(likesByFilmId::putAll);
+        return likesByFilmId;
+    }
+
+    private <R> List<R> queryChunks(String sql, List<Long> ids, boolean serial, ResultSetExtractor<R> extractor) {
+        return serial
+                ? multiIdLoader.queryChunksSerially(sql, ids, timeoutMs, extractor)
+                : multiIdLoader.queryChunks(sql, ids, timeoutMs, extractor);
+    }
+
+    private static void applyGenres(List<Film> films, Map<Long, List<Genre>> genresByFilmId) {
+        films.forEach(film ->
+                film.setGenres(genresByFilmId.getOrDefault(film.getId(), new ArrayList<>())));
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("filmorate.hydration.stage")
+                .description("Время выполнения этапа гидрации фильмов")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
+
+import java.sql.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Периодически сверяет films.likes_count с таблицей film_likes, а индекс популярности - с films,
+// и исправляет расхождения. Индекс догоняет БД только после фиксации транзакций, поэтому
+// расхождение с индексом исправляется, лишь если оно сохранилось при повторной проверке.
+@Component
+@Slf4j
+public class FilmLikesReconciler {
+
+    // Фильм есть в индексе, но отсутствует в БД
+    private static final int DELETED = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final ResourceVersions resourceVersions;
+    private final EntityCache entityCache;
+    private final long graceMs;
+
+    public FilmLikesReconciler(JdbcTemplate jdbcTemplate,
+                               FilmPopularityIndex popularityIndex,
+                               ResourceVersions resourceVersions,
+                               EntityCache entityCache,
+                               @Value("${filmorate.likes.reconcile-grace-ms:1000}") long graceMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.popularityIndex = popularityIndex;
+        this.resourceVersions = resourceVersions;
+        this.entityCache = entityCache;
+        this.graceMs = graceMs;
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.likes.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${filmorate.likes.reconcile-interval-ms:3600000}")
+    public int reconcile() {
+        String sql = "SELECT id FROM FINAL TABLE (UPDATE films f " +
+                "SET likes_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id) " +
+                "WHERE likes_count <> (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id))";
+
+        List<Long> repairedInDb = jdbcTemplate.queryForList(sql, Long.class);
+        if (!repairedInDb.isEmpty()) {
+            log.warn("Исправлен счетчик лайков в БД у {} фильмов", repairedInDb.size());
+            resourceVersions.filmsChanged(repairedInDb);
+            entityCache.filmsChanged(repairedInDb);
+        }
+
+        Map<Long, Integer> drift = findIndexDrift();
+        if (!drift.isEmpty() && graceMs > 0) {
+            try {
+                Thread.sleep(graceMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return repairedInDb.size();
+            }
+            // Остаются только расхождения, которые не исчезли и не изменились за время ожидания
+            drift.entrySet().retainAll(findIndexDrift().entrySet());
+        }
+        if (!drift.isEmpty()) {
+            log.warn("Индекс популярности расходился с БД у {} фильмов, записи исправлены", drift.size());
+            drift.forEach(this::repairIndex);
+            resourceVersions.filmsChanged(drift.keySet());
+        }
+
+        Set<Long> repaired = new HashSet<>(repairedInDb);
+        repaired.addAll(drift.keySet());
+        return repaired.size();
+    }
+
+    // id фильма -> likes_count в БД для всех фильмов, чья запись в индексе не совпадает с БД
+    private Map<Long, Integer> findIndexDrift() {
+        Set<Long> indexed = popularityIndex.getFilmIds();
+        Map<Long, Integer> drift = new HashMap<>();
+        jdbcTemplate.query("SELECT id, likes_count FROM films", rs -> {
+            long filmId = rs.getLong("id");
+            int likes = rs.getInt("likes_count");
+            if (!indexed.remove(filmId) || popularityIndex.getLikes(filmId) != likes) {
+                drift.put(filmId, likes);
+            }
+        });
+        indexed.forEach(filmId -> drift.put(filmId, DELETED));
+        return drift;
+    }
+
+    private void repairIndex(long filmId, int likes) {
+        if (likes == DELETED) {
+            popularityIndex.filmDeleted(filmId);
+        } else if (popularityIndex.contains(filmId)) {
+            popularityIndex.likesChanged(filmId, likes);
+        } else {
+            loadIndexKeys(filmId).ifPresent(film -> popularityIndex.filmRestored(film, likes));
+        }
+    }
+
+    // Для рейтингов по жанру и году нужны только дата выпуска и жанры фильма
+    private Optional<Film> loadIndexKeys(long filmId) {
+        List<Film> films = jdbcTemplate.query("SELECT release_date FROM films WHERE id = ?", (rs, rowNum) -> {
+            Film film = new Film();
+            film.setId(filmId);
+            Date releaseDate = rs.getDate("release_date");
+            film.setReleaseDate(releaseDate == null ? null : releaseDate.toLocalDate());
+            return film;
+        }, filmId);
+        if (films.isEmpty()) {
+            return Optional.empty();
+        }
+        Film film = films.get(0);
+        film.setGenres(jdbcTemplate.query("SELECT genre_id FROM film_genre WHERE film_id = ?", (rs, rowNum) -> {
+            Genre genre = new Genre();
+            genre.setId(rs.getLong("genre_id"));
+            return genre;
+        }, filmId));
+        return Optional.of(film);
+    }
+}
@@ -3,29 +3,88 @@ package ru.yandex.practicum.filmorate.storage.db;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.db.mapper.GenreMapper;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+// Жанры почти не меняются, поэтому хранятся в памяти и перечитываются по расписанию.
+// API для их изменения нет: правки, внесенные прямо в БД, подхватывает следующий refresh()
+// или сразу invalidate(), если менявший справочник не хочет ждать расписания
 @Repository
 @Slf4j
 @RequiredArgsConstructor
 public class GenreDbStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ResourceVersions resourceVersions;
+    private final EntityCache entityCache;
     private final GenreMapper genreMapper = new GenreMapper();
 
+    private volatile Map<Long, Genre> genresById;
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${filmorate.reference-cache.refresh-interval-ms:600000}",
+            fixedDelayString = "${filmorate.reference-cache.refresh-interval-ms:600000}")
+    public void refresh() {
+        Map<Long, Genre> loaded = loadGenres();
+        boolean changed = !loaded.equals(genresById);
+        // Сначала публикуются новые данные, затем меняются теги: иначе новый тег мог бы достаться старым данным
+        genresById = loaded;
+        if (changed) {
+            resourceVersions.genresChanged();
+            // Названия входят в закэшированные фильмы
+            entityCache.allFilmsChanged();
+        }
+    }
+
+    // В отличие от refresh(), тег и закэшированные фильмы сбрасываются безусловно
+    public void invalidate() {
+        genresById = loadGenres();
+        resourceVersions.genresChanged();
+        entityCache.allFilmsChanged();
+        log.info("Кэш жанров перезагружен");
+    }
+
     public List<Genre> getAllGenres() {
-        String sql = "SELECT * FROM genres ORDER BY id";
-        return jdbcTemplate.query(sql, genreMapper);
+        return genres().values().stream()
+                .map(GenreDbStorage::copyOf)
+                .collect(Collectors.toList());
     }
 
     public Optional<Genre> getGenreById(Long id) {
-        String sql = "SELECT * FROM genres WHERE id = ?";
-        List<Genre> genres = jdbcTemplate.query(sql, genreMapper, id);
-        return genres.isEmpty() ? Optional.empty() : Optional.of(genres.get(0));
+        return Optional.ofNullable(genres().get(id)).map(GenreDbStorage::copyOf);
+    }
+
+    public boolean existsById(Long id) {
+        return genres().containsKey(id);
+    }
+
+    private Map<Long, Genre> genres() {
+        return genresById;
+    }
+
+    private Map<Long, Genre> loadGenres() {
+        String sql = "SELECT * FROM genres ORDER BY id";
+        Map<Long, Genre> genres = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, genreMapper).forEach(genre -> genres.put(genre.getId(), genre));
+        log.debug("Загружено жанров в кэш: {}", genres.size());
+        return Collections.unmodifiableMap(genres);
+    }
+
+    private static Genre copyOf(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,349 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Отложенная пакетная запись лайков: операции копятся в ограниченной очереди
+// и сбрасываются в БД через batchUpdate по размеру пакета или по таймеру.
+// Глубина очереди, счетчики операций и время записи пакета публикуются в реестр метрик.
+@Component
+@Slf4j
+public class LikeWriteBehindBuffer {
+
+    public enum Durability {
+        // запрос завершается сразу после постановки в очередь
+        ASYNC,
+        // запрос ждет, пока его пакет будет записан в БД
+        SYNC
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final LikeGraph likeGraph;
+    private final ResourceVersions resourceVersions;
+    private final EntityCache entityCache;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final Durability durability;
+    private final BlockingQueue<PendingLike> queue;
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedOperations = new AtomicLong();
+    private final AtomicLong rejectedOperations = new AtomicLong();
+    // Операции, принятые в очередь, но не записанные в БД: в режиме ASYNC клиент о них уже не узнает
+    private final AtomicLong failedOperations = new AtomicLong();
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public LikeWriteBehindBuffer(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 FilmPopularityIndex popularityIndex,
+                                 LikeGraph likeGraph,
+                                 ResourceVersions resourceVersions,
+                                 EntityCache entityCache,
+                                 MeterRegistry registry,
+                                 @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                 @Value("${filmorate.likes.write-behind.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                                 @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                 @Value("${filmorate.likes.write-behind.offer-timeout-ms:100}") long offerTimeoutMs,
+                                 @Value("${filmorate.likes.write-behind.durability:ASYNC}") Durability durability) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.popularityIndex = popularityIndex;
+        this.likeGraph = likeGraph;
+        this.resourceVersions = resourceVersions;
+        this.entityCache = entityCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.durability = durability;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("filmorate.likes.write-behind.queue.depth", queue, BlockingQueue::size)
+                .description("Операций с лайками в очереди на запись")
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.flushes", flushCount, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.operations.flushed", flushedOperations, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.operations.rejected", rejectedOperations, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.operations.failed", failedOperations, AtomicLong::get)
+                .description("Операций с лайками, принятых в очередь, но не записанных в БД")
+                .register(registry);
+        this.flushTimer = Timer.builder("filmorate.likes.write-behind.flush")
+                .description("Время записи одного пакета лайков в БД")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "like-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Отложенная запись лайков включена: пакет {}, интервал {} мс, режим {}",
+                batchSize, flushIntervalMs, durability);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void addLike(long filmId, long userId) {
+        enqueue(new PendingLike(filmId, userId, true));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        enqueue(new PendingLike(filmId, userId, false));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedOperations() {
+        return flushedOperations.get();
+    }
+
+    public long getRejectedOperations() {
+        return rejectedOperations.get();
+    }
+
+    public long getFailedOperations() {
+        return failedOperations.get();
+    }
+
+    private void enqueue(PendingLike like) {
+        try {
+            if (!queue.offer(like, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedOperations.incrementAndGet();
+                throw new RejectedExecutionException("Очередь записи лайков переполнена, повторите запрос позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Постановка лайка в очередь прервана", e);
+        }
+
+        if (durability == Durability.SYNC) {
+            awaitFlush(like);
+        }
+    }
+
+    private void awaitFlush(PendingLike like) {
+        try {
+            like.result.get(flushIntervalMs + TimeUnit.SECONDS.toMillis(30), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Ожидание записи лайка прервано", e);
+        } catch (TimeoutException e) {
+            // Операция остается в очереди и может быть записана позже, поэтому это не ошибка данных
+            throw new QueryTimeoutException("Лайк не был записан за отведенное время", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new QueryTimeoutException("Лайк не был записан", e.getCause());
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingLike> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingLike first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingLike next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка при пакетной записи лайков, потеряно операций: {}", batch.size(), e);
+                failedOperations.addAndGet(batch.size());
+                batch.forEach(like -> like.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingLike> batch) {
+        long start = System.nanoTime();
+        Set<Long> affectedFilmIds = new LinkedHashSet<>();
+        Map<Long, Integer> likeCounters = new HashMap<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Операции применяются в порядке поступления сериями одного типа
+            int from = 0;
+            while (from < batch.size()) {
+                boolean add = batch.get(from).add;
+                int to = from;
+                while (to < batch.size() && batch.get(to).add == add) {
+                    to++;
+                }
+                applyRun(batch.subList(from, to), add);
+                from = to;
+            }
+
+            batch.forEach(like -> affectedFilmIds.add(like.filmId));
+            likeCounters.putAll(refreshLikeCounters(affectedFilmIds));
+        });
+
+        // Индексы обновляются только после фиксации транзакции и только записанными операциями
+        likeCounters.forEach(popularityIndex::likesChanged);
+        for (PendingLike like : batch) {
+            if (!like.applied) {
+                continue;
+            }
+            if (like.add) {
+                likeGraph.likeAdded(like.filmId, like.userId);
+            } else {
+                likeGraph.likeRemoved(like.filmId, like.userId);
+            }
+            resourceVersions.filmChanged(like.filmId);
+            entityCache.filmChanged(like.filmId);
+        }
+        batch.forEach(like -> like.result.complete(null));
+
+        long elapsed = System.nanoTime() - start;
+        flushCount.incrementAndGet();
+        flushedOperations.addAndGet(batch.size());
+        flushTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.debug("Записан пакет из {} операций с лайками за {} мкс, в очереди осталось {}",
+                batch.size(), TimeUnit.NANOSECONDS.toMicros(elapsed), queue.size());
+    }
+
+    private void applyRun(List<PendingLike> run, boolean add) {
+        String sql = add
+                ? "MERGE INTO film_likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)"
+                : "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+        List<Object[]> args = new ArrayList<>(run.size());
+        run.forEach(like -> args.add(new Object[]{like.filmId, like.userId}));
+
+        try {
+            jdbcTemplate.batchUpdate(sql, args);
+            run.forEach(like -> like.applied = true);
+        } catch (DataAccessException e) {
+            // Пакет содержит некорректные строки (например, несуществующий фильм) - пишем построчно
+            log.warn("Пакетная запись лайков не удалась ({}), выполняется построчная запись", e.getMessage());
+            for (PendingLike like : run) {
+                try {
+                    jdbcTemplate.update(sql, like.filmId, like.userId);
+                    like.applied = true;
+                } catch (DuplicateKeyException duplicate) {
+                    // Лайк уже есть: повторная вставка - не ошибка
+                    like.applied = true;
+                } catch (DataAccessException rowError) {
+                    failedOperations.incrementAndGet();
+                    log.warn("Не удалось записать лайк пользователя {} фильму {}: {}",
+                            like.userId, like.filmId, rowError.getMessage());
+                    like.result.completeExceptionally(new IllegalArgumentException(
+                            "Не удалось записать лайк пользователя " + like.userId + " фильму " + like.filmId));
+                }
+            }
+        }
+    }
+
+    // Возвращает новые значения счетчиков; в индекс популярности они попадут после фиксации
+    private Map<Long, Integer> refreshLikeCounters(Set<Long> filmIds) {
+        List<Object[]> args = new ArrayList<>(filmIds.size());
+        filmIds.forEach(filmId -> args.add(new Object[]{filmId, filmId}));
+        jdbcTemplate.batchUpdate("UPDATE films SET likes_count = " +
+                "(SELECT COUNT(*) FROM film_likes WHERE film_id = ?) WHERE id = ?", args);
+
+        String sql = "SELECT id, likes_count FROM films WHERE id = ANY(?)";
+        PreparedStatementSetter binder = ps -> ps.setArray(1,
+                ps.getConnection().createArrayOf("BIGINT", filmIds.toArray(new Long[0])));
+        Map<Long, Integer> likeCounters = new HashMap<>();
+        jdbcTemplate.query(sql, binder, rs -> {
+            likeCounters.put(rs.getLong("id"), rs.getInt("likes_count"));
+        });
+        return likeCounters;
+    }
+
+    private static final class PendingLike {
+        private final long filmId;
+        private final long userId;
+        private final boolean add;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        // Изменяется и читается только потоком записи
+        private boolean applied;
+
+        private PendingLike(long filmId, long userId, boolean add) {
+            this.filmId = filmId;
+            this.userId = userId;
+            this.add = add;
+        }
+    }
+}
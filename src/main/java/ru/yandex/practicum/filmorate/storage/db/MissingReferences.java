@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+// Связи (лайки, дружба) вставляются без предварительного чтения сторон: отсутствующий фильм
+// или пользователь обнаруживается по нарушению внешнего ключа и превращается в NoSuchElementException (404).
+// Проверка существования выполняется только на этом редком пути, чтобы назвать в ошибке нужный id,
+// либо заранее - там, где запись откладывается и ошибку внешнего ключа клиент уже не получит.
+final class MissingReferences {
+
+    // SQLSTATE нарушения внешнего ключа при отсутствии родительской строки
+    private static final String PARENT_MISSING_STATE = "23506";
+
+    private MissingReferences() {
+    }
+
+    static Reference film(Long id) {
+        return new Reference("films", "Фильм", id);
+    }
+
+    static Reference user(Long id) {
+        return new Reference("users", "Пользователь", id);
+    }
+
+    static RuntimeException translate(DataIntegrityViolationException e, JdbcTemplate jdbcTemplate,
+                                      Reference... references) {
+        Throwable cause = e.getMostSpecificCause();
+        if (!(cause instanceof SQLException) || !PARENT_MISSING_STATE.equals(((SQLException) cause).getSQLState())) {
+            return e;
+        }
+        NoSuchElementException missing = findMissing(jdbcTemplate, references);
+        return missing == null ? e : missing;
+    }
+
+    static void requireExisting(JdbcTemplate jdbcTemplate, Reference... references) {
+        NoSuchElementException missing = findMissing(jdbcTemplate, references);
+        if (missing != null) {
+            throw missing;
+        }
+    }
+
+    private static NoSuchElementException findMissing(JdbcTemplate jdbcTemplate, Reference... references) {
+        for (Reference reference : references) {
+            Boolean exists = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS(SELECT 1 FROM " + reference.table + " WHERE id = ?)", Boolean.class, reference.id);
+            if (!Boolean.TRUE.equals(exists)) {
+                return new NoSuchElementException(reference.label + " с id " + reference.id + " не найден");
+            }
+        }
+        return null;
+    }
+
+    static final class Reference {
+        private final String table;
+        private final String label;
+        private final Long id;
+
+        private Reference(String table, String label, Long id) {
+            this.table = table;
+            this.label = label;
+            this.id = id;
+        }
+    }
+}
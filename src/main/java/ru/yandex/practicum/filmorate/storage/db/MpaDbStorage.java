@@ -3,29 +3,89 @@ package ru.yandex.practicum.filmorate.storage.db;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.db.mapper.MpaMapper;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+// Рейтинги MPA почти не меняются, поэтому хранятся в памяти и перечитываются по расписанию.
+// API для их изменения нет: правки, внесенные прямо в БД, подхватывает следующий refresh()
+// или сразу invalidate(), если менявший справочник не хочет ждать расписания
 @Repository
 @Slf4j
 @RequiredArgsConstructor
 public class MpaDbStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ResourceVersions resourceVersions;
+    private final EntityCache entityCache;
     private final MpaMapper mpaMapper = new MpaMapper();
 
+    private volatile Map<Long, MpaRating> mpaById;
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${filmorate.reference-cache.refresh-interval-ms:600000}",
+            fixedDelayString = "${filmorate.reference-cache.refresh-interval-ms:600000}")
+    public void refresh() {
+        Map<Long, MpaRating> loaded = loadMpa();
+        boolean changed = !loaded.equals(mpaById);
+        // Сначала публикуются новые данные, затем меняются теги: иначе новый тег мог бы достаться старым данным
+        mpaById = loaded;
+        if (changed) {
+            resourceVersions.mpaChanged();
+            // Названия входят в закэшированные фильмы
+            entityCache.allFilmsChanged();
+        }
+    }
+
+    // В отличие от refresh(), тег и закэшированные фильмы сбрасываются безусловно
+    public void invalidate() {
+        mpaById = loadMpa();
+        resourceVersions.mpaChanged();
+        entityCache.allFilmsChanged();
+        log.info("Кэш рейтингов MPA перезагружен");
+    }
+
     public List<MpaRating> getAllMpa() {
-        String sql = "SELECT * FROM mpa_ratings ORDER BY id";
-        return jdbcTemplate.query(sql, mpaMapper);
+        return mpa().values().stream()
+                .map(MpaDbStorage::copyOf)
+                .collect(Collectors.toList());
     }
 
     public Optional<MpaRating> getMpaById(Long id) {
-        String sql = "SELECT * FROM mpa_ratings WHERE id = ?";
-        List<MpaRating> mpaRatings = jdbcTemplate.query(sql, mpaMapper, id);
-        return mpaRatings.isEmpty() ? Optional.empty() : Optional.of(mpaRatings.get(0));
+        return Optional.ofNullable(mpa().get(id)).map(MpaDbStorage::copyOf);
+    }
+
+    public boolean existsById(Long id) {
+        return mpa().containsKey(id);
+    }
+
+    private Map<Long, MpaRating> mpa() {
+        return mpaById;
+    }
+
+    private Map<Long, MpaRating> loadMpa() {
+        String sql = "SELECT * FROM mpa_ratings ORDER BY id";
+        Map<Long, MpaRating> ratings = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, mpaMapper).forEach(mpa -> ratings.put(mpa.getId(), mpa));
+        log.debug("Загружено рейтингов MPA в кэш: {}", ratings.size());
+        return Collections.unmodifiableMap(ratings);
+    }
+
+    private static MpaRating copyOf(MpaRating mpa) {
+        MpaRating copy = new MpaRating();
+        copy.setId(mpa.getId());
+        copy.setName(mpa.getName());
+        copy.setDescription(mpa.getDescription());
+        return copy;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Загрузка строк по набору id: id передаются одним параметром-массивом (col = ANY(?)),
+// поэтому текст запроса не зависит от количества id и план кэшируется в сессии H2.
+// Большие наборы делятся на чанки фиксированного размера, которые выполняются параллельно.
+@Component
+@Slf4j
+public class MultiIdLoader {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+    private final int parallelThreshold;
+    private final ThreadPoolExecutor executor;
+    private final Executor decoratedExecutor;
+
+    public MultiIdLoader(JdbcTemplate jdbcTemplate,
+                         ObjectProvider<TaskDecorator> taskDecorators,
+                         @Value("${filmorate.multi-id.chunk-size:1000}") int chunkSize,
+                         @Value("${filmorate.multi-id.parallel-threshold:2000}") int parallelThreshold,
+                         @Value("${filmorate.multi-id.threads:4}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+        this.parallelThreshold = parallelThreshold;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "multi-id-loader-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        List<TaskDecorator> decorators = taskDecorators.orderedStream().collect(Collectors.toList());
+        this.decoratedExecutor = task -> {
+            for (TaskDecorator decorator : decorators) {
+                task = decorator.decorate(task);
+            }
+            executor.execute(task);
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // sql должен содержать ровно один параметр - массив id, например "WHERE film_id = ANY(?)"
+    public <T> List<T> query(String sql, Collection<Long> ids, RowMapper<T> rowMapper) {
+        List<T> result = new ArrayList<>(ids.size());
+        queryChunks(sql, ids, new RowMapperResultSetExtractor<>(rowMapper)).forEach(result::addAll);
+        return result;
+    }
+
+    // Возвращает результаты extractor'а по каждому чанку в порядке чанков
+    public <R> List<R> queryChunks(String sql, Collection<Long> ids, ResultSetExtractor<R> extractor) {
+        return queryChunks(sql, ids, 0, extractor);
+    }
+
+    // timeoutMs > 0 ограничивает каждый запрос таймаутом JDBC (с точностью до секунды, в большую сторону):
+    // СУБД сама отменяет запрос, чего не добиться прерыванием потока
+    public <R> List<R> queryChunks(String sql, Collection<Long> ids, long timeoutMs, ResultSetExtractor<R> extractor) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long[]> chunks = split(ids);
+        if (chunks.size() == 1 || ids.size() < parallelThreshold) {
+            return querySerially(sql, chunks, timeoutMs, extractor);
+        }
+
+        List<CompletableFuture<R>> futures = new ArrayList<>(chunks.size());
+        chunks.forEach(chunk -> futures.add(CompletableFuture.supplyAsync(
+                () -> queryChunk(sql, chunk, timeoutMs, extractor), decoratedExecutor)));
+
+        List<R> results = new ArrayList<>(chunks.size());
+        try {
+            futures.forEach(future -> results.add(future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    // То же, но все чанки выполняются по очереди в вызывающем потоке. Для вызовов из других пулов,
+    // которые иначе заняли бы еще и соединения этого, и для транзакций, чьих незакоммиченных строк
+    // потоки пула не увидят
+    public <R> List<R> queryChunksSerially(String sql, Collection<Long> ids, long timeoutMs,
+                                           ResultSetExtractor<R> extractor) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return querySerially(sql, split(ids), timeoutMs, extractor);
+    }
+
+    private <R> List<R> querySerially(String sql, List<Long[]> chunks, long timeoutMs, ResultSetExtractor<R> extractor) {
+        List<R> results = new ArrayList<>(chunks.size());
+        chunks.forEach(chunk -> results.add(queryChunk(sql, chunk, timeoutMs, extractor)));
+        return results;
+    }
+
+    private <R> R queryChunk(String sql, Long[] chunk, long timeoutMs, ResultSetExtractor<R> extractor) {
+        PreparedStatementSetter binder = ps -> {
+            if (timeoutMs > 0) {
+                ps.setQueryTimeout((int) Math.max(1, (timeoutMs + 999) / 1000));
+            }
+            ps.setArray(1, ps.getConnection().createArrayOf("BIGINT", chunk));
+        };
+        return jdbcTemplate.query(sql, binder, extractor);
+    }
+
+    private List<Long[]> split(Collection<Long> ids) {
+        List<Long[]> chunks = new ArrayList<>((ids.size() + chunkSize - 1) / chunkSize);
+        Long[] chunk = null;
+        int position = 0;
+        int remaining = ids.size();
+        for (Long id : ids) {
+            if (chunk == null) {
+                chunk = new Long[Math.min(chunkSize, remaining)];
+                position = 0;
+            }
+            chunk[position++] = id;
+            remaining--;
+            if (position == chunk.length) {
+                chunks.add(chunk);
+                chunk = null;
+            }
+        }
+        return chunks;
+    }
+}
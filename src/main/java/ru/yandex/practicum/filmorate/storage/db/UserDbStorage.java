@@ -4,20 +4,36 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 import ru.yandex.practicum.filmorate.storage.db.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.index.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 @Qualifier("userDbStorage")
@@ -27,6 +43,12 @@ import java.util.Optional;
 public class UserDbStorage implements UserStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final FriendshipGraph friendshipGraph;
+    private final LikeGraph likeGraph;
+    private final ResourceVersions resourceVersions;
+    private final MultiIdLoader multiIdLoader;
+    private final EntityCache entityCache;
     private final UserMapper userMapper = new UserMapper();
 
     @Override
@@ -35,11 +57,21 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, userMapper);
     }
 
+    @Override
+    public List<User> getUsers(Long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, userMapper, afterId == null ? 0L : afterId, limit);
+    }
+
     @Override
     public Optional<User> getUserById(Long id) {
+        return entityCache.getUser(id, this::loadUser);
+    }
+
+    private User loadUser(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
         List<User> users = jdbcTemplate.query(sql, userMapper, id);
-        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+        return users.isEmpty() ? null : users.get(0);
     }
 
     @Override
@@ -63,6 +95,63 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    @Transactional
+    public List<User> createUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (User user : users) {
+                    ps.setString(1, user.getEmail());
+                    ps.setString(2, user.getLogin());
+                    ps.setString(3, user.getName());
+                    ps.setDate(4, user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next()) {
+                        users.get(i++).setId(keys.getLong(1));
+                    }
+                    if (i != users.size()) {
+                        throw new IllegalStateException("Получено " + i + " сгенерированных id вместо " + users.size());
+                    }
+                }
+            }
+            return null;
+        });
+
+        log.debug("Пакетно создано пользователей: {}", users.size());
+        return users;
+    }
+
+    @Override
+    public Set<String> getExistingEmails(Collection<String> emails) {
+        return findExisting("email", emails);
+    }
+
+    @Override
+    public Set<String> getExistingLogins(Collection<String> logins) {
+        return findExisting("login", logins);
+    }
+
+    private Set<String> findExisting(String column, Collection<String> values) {
+        if (values.isEmpty()) {
+            return new HashSet<>();
+        }
+        String sql = "SELECT " + column + " FROM users WHERE " + column + " = ANY(?)";
+        PreparedStatementSetter binder = ps -> ps.setArray(1,
+                ps.getConnection().createArrayOf("VARCHAR", values.toArray(new String[0])));
+        return new HashSet<>(jdbcTemplate.query(sql, binder, (rs, rowNum) -> rs.getString(1)));
+    }
+
     @Override
     public User updateUser(User user) {
         String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
@@ -77,51 +166,127 @@ public class UserDbStorage implements UserStorage {
         if (rowsUpdated == 0) {
             throw new NoSuchElementException("Пользователь с id " + user.getId() + " не найден");
         }
+        entityCache.userChanged(user.getId());
 
         log.info("Обновлен пользователь с id: {}", user.getId());
         return user;
     }
 
     @Override
+    @Transactional
     public void deleteUser(Long id) {
+        // Лайки удаляются явно, а не каскадом: так в той же транзакции известны фильмы,
+        // у которых нужно уменьшить счетчики
+        List<Long> likedFilmIds = jdbcTemplate.queryForList(
+                "SELECT film_id FROM OLD TABLE (DELETE FROM film_likes WHERE user_id = ?)", Long.class, id);
+        if (!likedFilmIds.isEmpty()) {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("BIGINT", likedFilmIds.toArray())));
+        }
+
         String sql = "DELETE FROM users WHERE id = ?";
         int rowsDeleted = jdbcTemplate.update(sql, id);
 
         if (rowsDeleted == 0) {
             throw new NoSuchElementException("Пользователь с id " + id + " не найден");
         }
+        AfterCommit.run(() -> {
+            popularityIndex.likesRemoved(likedFilmIds);
+            likeGraph.userDeleted(id);
+            friendshipGraph.removeUser(id);
+            resourceVersions.filmsChanged(likedFilmIds);
+            entityCache.filmsChanged(likedFilmIds);
+            entityCache.userChanged(id);
+        });
 
         log.info("Удален пользователь с id: {}", id);
     }
 
     @Override
     public List<User> getFriends(Long userId) {
-        String sql = "SELECT u.* FROM users u " +
-                "JOIN friendship f ON u.id = f.friend_id " +
-                "WHERE f.user_id = ?";
-        return jdbcTemplate.query(sql, userMapper, userId);
+        return getUsersByIds(friendshipGraph.getFriends(userId));
     }
 
     @Override
     public void addFriend(Long userId, Long friendId) {
-        String sql = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+        // Повторное добавление ничего не меняет и не считается ошибкой
+        String sql = "MERGE INTO friendship f " +
+                "USING (SELECT CAST(? AS BIGINT) AS user_id, CAST(? AS BIGINT) AS friend_id) s " +
+                "ON f.user_id = s.user_id AND f.friend_id = s.friend_id " +
+                "WHEN NOT MATCHED THEN INSERT (user_id, friend_id) VALUES (s.user_id, s.friend_id)";
+        try {
+            if (jdbcTemplate.update(sql, userId, friendId) == 0) {
+                return;
+            }
+        } catch (DuplicateKeyException e) {
+            // Ту же связь одновременно вставил параллельный MERGE - результат тот же, что и у повтора
+            return;
+        } catch (DataIntegrityViolationException e) {
+            throw MissingReferences.translate(e, jdbcTemplate,
+                    MissingReferences.user(userId), MissingReferences.user(friendId));
+        }
+        friendshipGraph.addFriend(userId, friendId);
         log.info("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
         String sql = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        if (jdbcTemplate.update(sql, userId, friendId) > 0) {
+            friendshipGraph.removeFriend(userId, friendId);
+        } else {
+            // Связи не было: отличаем "уже удалено" от несуществующего пользователя. Проверка идет
+            // по первичному ключу в основной базе, а не через кэш пользователей, который мог устареть
+            MissingReferences.requireExisting(jdbcTemplate,
+                    MissingReferences.user(userId), MissingReferences.user(friendId));
+        }
         log.info("Запрос на удаление друга {} у пользователя {}", friendId, userId);
     }
 
     @Override
     public List<User> getCommonFriends(Long userId, Long otherUserId) {
-        String sql = "SELECT u.* FROM users u " +
-                "JOIN friendship f1 ON u.id = f1.friend_id " +
-                "JOIN friendship f2 ON u.id = f2.friend_id " +
-                "WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbcTemplate.query(sql, userMapper, userId, otherUserId);
+        return getUsersByIds(friendshipGraph.getCommonFriends(userId, otherUserId));
+    }
+
+    @Override
+    public long[] getFriendIds(Long userId) {
+        return friendshipGraph.getFriends(userId);
+    }
+
+    @Override
+    public long[] getFollowerIds(Long userId) {
+        return friendshipGraph.getFollowers(userId);
+    }
+
+    // Загружает пользователей одним запросом в порядке ids; отсутствующие id пропускаются
+    @Override
+    public List<User> getUsersByIds(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> boxedIds = new ArrayList<>(ids.length);
+        boolean sorted = true;
+        for (int i = 0; i < ids.length; i++) {
+            boxedIds.add(ids[i]);
+            if (i > 0 && ids[i] < ids[i - 1]) {
+                sorted = false;
+            }
+        }
+        String sql = "SELECT * FROM users WHERE id = ANY(?) ORDER BY id";
+        List<User> users = multiIdLoader.query(sql, boxedIds, userMapper);
+        if (sorted) {
+            return users;
+        }
+
+        Map<Long, User> usersById = new HashMap<>(users.size() * 2);
+        users.forEach(user -> usersById.put(user.getId(), user));
+        List<User> result = new ArrayList<>(users.size());
+        for (long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
     }
 }
\ No newline at end of file
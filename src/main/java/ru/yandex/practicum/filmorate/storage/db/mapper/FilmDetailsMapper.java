@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage.db.mapper;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Фильм вместе с жанрами и id лайкнувших пользователей, собранными в массивы через ARRAY_AGG
+// в той же строке: genre_ids, genre_names и (если запрошены) like_ids
+public class FilmDetailsMapper implements RowMapper<Film> {
+
+    private final FilmMapper filmMapper = new FilmMapper();
+    private final boolean withLikes;
+
+    public FilmDetailsMapper(boolean withLikes) {
+        this.withLikes = withLikes;
+    }
+
+    @Override
+    public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Film film = filmMapper.mapRow(rs, rowNum);
+
+        Object[] genreIds = toArray(rs.getArray("genre_ids"));
+        Object[] genreNames = toArray(rs.getArray("genre_names"));
+        List<Genre> genres = new ArrayList<>(genreIds.length);
+        for (int i = 0; i < genreIds.length; i++) {
+            Genre genre = new Genre();
+            genre.setId(((Number) genreIds[i]).longValue());
+            genre.setName((String) genreNames[i]);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+
+        if (withLikes) {
+            LongIdSet.Builder likes = LongIdSet.builder();
+            for (Object userId : toArray(rs.getArray("like_ids"))) {
+                likes.add(((Number) userId).longValue());
+            }
+            film.setLikes(likes.build());
+            film.setLikesCount(null);
+        }
+        return film;
+    }
+
+    // ARRAY_AGG по пустому набору строк возвращает NULL, а не пустой массив
+    private static Object[] toArray(Array array) throws SQLException {
+        if (array == null) {
+            return new Object[0];
+        }
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+}
@@ -6,7 +6,6 @@ import ru.yandex.practicum.filmorate.model.*;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.HashSet;
 
 public class FilmMapper implements RowMapper<Film> {
     @Override
@@ -33,7 +32,8 @@ public class FilmMapper implements RowMapper<Film> {
         film.setMpa(mpa);
 
         film.setGenres(new java.util.ArrayList<>());
-        film.setLikes(new HashSet<>());
+        film.setLikes(LongIdSet.empty());
+        film.setLikesCount(rs.getInt("likes_count"));
 
         return film;
     }
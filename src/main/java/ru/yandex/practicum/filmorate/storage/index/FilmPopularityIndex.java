@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Рейтинги фильмов по числу лайков: общий, по каждому жанру, по каждому году выпуска
+// и по каждой паре жанр-год, чтобы запрос с обоими фильтрами не перебирал чужие фильмы.
+// Все рейтинги фильма меняются внутри compute по его id, поэтому обновления одного фильма
+// не перемешиваются между собой, а чтение не требует общей блокировки.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+
+    private static final Leaderboard EMPTY_BOARD = new Leaderboard();
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Indexes indexes = new Indexes();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, LongIdSet.Builder> genreBuilders = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id", rs -> {
+            genreBuilders.computeIfAbsent(rs.getLong("film_id"), k -> LongIdSet.builder())
+                    .add(rs.getLong("genre_id"));
+        });
+
+        String sql = "SELECT id, likes_count, EXTRACT(YEAR FROM release_date) AS release_year FROM films";
+
+        Indexes rebuilt = new Indexes();
+        jdbcTemplate.query(sql, rs -> {
+            long filmId = rs.getLong("id");
+            int releaseYear = rs.getInt("release_year");
+            Integer year = rs.wasNull() ? null : releaseYear;
+            LongIdSet.Builder genres = genreBuilders.get(filmId);
+            rebuilt.put(filmId, rs.getInt("likes_count"),
+                    new FilmKeys(genres == null ? SortedLongArrays.EMPTY : genres.build().toLongArray(), year));
+        });
+        indexes = rebuilt;
+        log.info("Индекс популярности фильмов перестроен, фильмов в индексе: {}, жанров: {}, годов: {}",
+                rebuilt.all.size(), rebuilt.byGenre.size(), rebuilt.byYear.size());
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        return indexes.all.top(count);
+    }
+
+    public List<Long> getTopFilmIds(int count, Long genreId, Integer year) {
+        return indexes.board(genreId, year).top(count);
+    }
+
+    public boolean contains(long filmId) {
+        return indexes.keys.containsKey(filmId);
+    }
+
+    public int getLikes(long filmId) {
+        return indexes.all.getLikes(filmId);
+    }
+
+    // Снимок id фильмов в индексе для сверки с БД
+    public Set<Long> getFilmIds() {
+        return new HashSet<>(indexes.keys.keySet());
+    }
+
+    public void filmCreated(Film film) {
+        indexes.put(film.getId(), 0, FilmKeys.of(film));
+    }
+
+    // Возвращает в индекс фильм, которого в нем не оказалось при сверке с БД
+    public void filmRestored(Film film, int likes) {
+        indexes.put(film.getId(), likes, FilmKeys.of(film));
+    }
+
+    // Перемещает фильм в рейтинги новых жанров и года, сохраняя число лайков
+    public void filmUpdated(Film film) {
+        Indexes current = indexes;
+        FilmKeys keys = FilmKeys.of(film);
+        current.keys.computeIfPresent(film.getId(), (filmId, previous) -> {
+            int likes = current.all.getLikes(filmId);
+            current.forEachBoard(previous, board -> board.remove(filmId));
+            current.forEachBoard(keys, board -> board.put(filmId, likes));
+            return keys;
+        });
+    }
+
+    public void filmDeleted(long filmId) {
+        Indexes current = indexes;
+        current.keys.computeIfPresent(filmId, (id, previous) -> {
+            current.all.remove(filmId);
+            current.forEachBoard(previous, board -> board.remove(filmId));
+            return null;
+        });
+    }
+
+    public void likeAdded(long filmId) {
+        indexes.increment(filmId, 1);
+    }
+
+    public void likeRemoved(long filmId) {
+        indexes.increment(filmId, -1);
+    }
+
+    public void likesChanged(long filmId, int likes) {
+        Indexes current = indexes;
+        current.keys.computeIfPresent(filmId, (id, keys) -> {
+            current.all.update(filmId, likes);
+            current.forEachBoard(keys, board -> board.update(filmId, likes));
+            return keys;
+        });
+    }
+
+    public void likesRemoved(Collection<Long> filmIds) {
+        filmIds.forEach(this::likeRemoved);
+    }
+
+    private static final class Indexes {
+        private final Leaderboard all = new Leaderboard();
+        private final Map<Long, Leaderboard> byGenre = new ConcurrentHashMap<>();
+        private final Map<Integer, Leaderboard> byYear = new ConcurrentHashMap<>();
+        private final Map<Long, Map<Integer, Leaderboard>> byGenreAndYear = new ConcurrentHashMap<>();
+        private final Map<Long, FilmKeys> keys = new ConcurrentHashMap<>();
+
+        private void put(long filmId, int likes, FilmKeys filmKeys) {
+            keys.compute(filmId, (id, previous) -> {
+                if (previous != null) {
+                    forEachBoard(previous, board -> board.remove(filmId));
+                }
+                all.put(filmId, likes);
+                forEachBoard(filmKeys, board -> board.put(filmId, likes));
+                return filmKeys;
+            });
+        }
+
+        private void increment(long filmId, int delta) {
+            keys.computeIfPresent(filmId, (id, filmKeys) -> {
+                all.increment(filmId, delta);
+                int likes = all.getLikes(filmId);
+                forEachBoard(filmKeys, board -> board.update(filmId, likes));
+                return filmKeys;
+            });
+        }
+
+        private Leaderboard board(Long genreId, Integer year) {
+            if (genreId == null && year == null) {
+                return all;
+            }
+            if (year == null) {
+                return byGenre.getOrDefault(genreId, EMPTY_BOARD);
+            }
+            if (genreId == null) {
+                return byYear.getOrDefault(year, EMPTY_BOARD);
+            }
+            return byGenreAndYear.getOrDefault(genreId, Map.of()).getOrDefault(year, EMPTY_BOARD);
+        }
+
+        private void forEachBoard(FilmKeys filmKeys, Consumer<Leaderboard> action) {
+            for (long genreId : filmKeys.genreIds) {
+                action.accept(byGenre.computeIfAbsent(genreId, k -> new Leaderboard()));
+                if (filmKeys.year != null) {
+                    action.accept(byGenreAndYear.computeIfAbsent(genreId, k -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(filmKeys.year, k -> new Leaderboard()));
+                }
+            }
+            if (filmKeys.year != null) {
+                action.accept(byYear.computeIfAbsent(filmKeys.year, k -> new Leaderboard()));
+            }
+        }
+    }
+
+    // Атрибуты фильма, по которым строятся отфильтрованные рейтинги
+    private static final class FilmKeys {
+        private final long[] genreIds;
+        private final Integer year;
+
+        private FilmKeys(long[] genreIds, Integer year) {
+            this.genreIds = genreIds;
+            this.year = year;
+        }
+
+        private static FilmKeys of(Film film) {
+            LongIdSet.Builder genres = LongIdSet.builder();
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    if (genre != null && genre.getId() != null) {
+                        genres.add(genre.getId());
+                    }
+                }
+            }
+            Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+            return new FilmKeys(genres.build().toLongArray(), year);
+        }
+    }
+}
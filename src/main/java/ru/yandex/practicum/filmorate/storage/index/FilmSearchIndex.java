@@ -0,0 +1,513 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearchField;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Инвертированный индекс по названию и описанию фильмов. Текст приводится к нижнему регистру
+// и режется на слова; для каждого поля хранятся списки фильмов по целым словам и по триграммам слов.
+// Слово запроса из трех и более символов ищется как подстрока через пересечение списков его триграмм,
+// более короткое - только как целое слово. Пересечение и подсчет релевантности идут по примитивным
+// массивам без создания объектов на каждый элемент списка.
+// Перестройка читает БД в новый индекс, не останавливая записи: изменения, пришедшие за это время,
+// запоминаются в журнале и применяются к новому индексу перед подменой.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    private static final int EXACT_WORD_SCORE = 3;
+    private static final int SUBSTRING_SCORE = 1;
+    private static final int MAX_QUERY_TOKENS = 16;
+
+    // Отметка удаления в журнале перестройки
+    private static final Doc DELETED = new Doc("", "");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private volatile Index index = new Index();
+
+    private final Object journalLock = new Object();
+    // Последнее изменение каждого фильма во время перестройки; null, когда перестройки нет
+    private Map<Long, Doc> rebuildJournal;
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        synchronized (journalLock) {
+            rebuildJournal = new HashMap<>();
+        }
+        Index rebuilt = new Index();
+        try {
+            // Фильмы читаются по возрастанию id, поэтому списки только дописываются без копирования
+            jdbcTemplate.query("SELECT id, name, description FROM films ORDER BY id", rs -> {
+                rebuilt.put(rs.getLong("id"), new Doc(rs.getString("name"), rs.getString("description")));
+            });
+            synchronized (journalLock) {
+                rebuildJournal.forEach((filmId, doc) -> {
+                    if (doc == DELETED) {
+                        rebuilt.remove(filmId);
+                    } else {
+                        rebuilt.put(filmId, doc);
+                    }
+                });
+                index = rebuilt;
+            }
+        } finally {
+            synchronized (journalLock) {
+                rebuildJournal = null;
+            }
+        }
+        log.info("Поисковый индекс фильмов построен, фильмов: {}, слов в названиях: {}, в описаниях: {}",
+                rebuilt.docs.size(), rebuilt.fields[0].words.size(), rebuilt.fields[1].words.size());
+    }
+
+    public void filmSaved(Film film) {
+        Doc doc = new Doc(film.getName(), film.getDescription());
+        target(film.getId(), doc).put(film.getId(), doc);
+    }
+
+    public void filmDeleted(long filmId) {
+        target(filmId, DELETED).remove(filmId);
+    }
+
+    // Индекс, в который пишется изменение. Если оно пришло до подмены, перестройка повторит его из журнала
+    private Index target(long filmId, Doc change) {
+        synchronized (journalLock) {
+            if (rebuildJournal != null) {
+                rebuildJournal.put(filmId, change);
+            }
+            return index;
+        }
+    }
+
+    // Число непустых списков слов и триграмм по всем полям
+    int termCount() {
+        Index current = index;
+        int count = 0;
+        for (FieldIndex field : current.fields) {
+            count += field.words.size() + field.trigrams.size();
+        }
+        return count;
+    }
+
+    // id найденных фильмов по убыванию релевантности, затем популярности, затем по возрастанию id
+    public List<Long> search(String query, Set<FilmSearchField> fields, int limit) {
+        Index current = index;
+        String[] tokens = tokenize(normalize(query));
+        if (tokens.length == 0 || fields.isEmpty()) {
+            return new ArrayList<>();
+        }
+        FilmSearchField[] selected = fields.toArray(new FilmSearchField[0]);
+
+        // Кандидаты по каждому слову запроса: объединение по полям, затем пересечение по словам (AND)
+        PostingList.Snapshot[][] fieldMatches = new PostingList.Snapshot[tokens.length][selected.length];
+        PostingList.Snapshot[] tokenMatches = new PostingList.Snapshot[tokens.length];
+        for (int t = 0; t < tokens.length; t++) {
+            PostingList.Snapshot union = PostingList.EMPTY;
+            for (int f = 0; f < selected.length; f++) {
+                fieldMatches[t][f] = current.field(selected[f]).match(tokens[t]);
+                union = union(union, fieldMatches[t][f]);
+            }
+            tokenMatches[t] = union;
+        }
+        PostingList.Snapshot candidates = intersect(tokenMatches);
+        int size = candidates.size;
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+
+        long[] ids = candidates.ids;
+        int[] scores = new int[size];
+        int[] likes = new int[size];
+        for (int t = 0; t < tokens.length; t++) {
+            for (int f = 0; f < selected.length; f++) {
+                PostingList.Snapshot exact = current.field(selected[f]).word(tokens[t]);
+                PostingList.Snapshot matched = fieldMatches[t][f];
+                int weight = selected[f].getWeight();
+                for (int i = 0; i < size; i++) {
+                    if (exact.contains(ids[i])) {
+                        scores[i] += EXACT_WORD_SCORE * weight;
+                    } else if (matched.contains(ids[i])) {
+                        scores[i] += SUBSTRING_SCORE * weight;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            likes[i] = popularityIndex.getLikes(ids[i]);
+        }
+
+        // Совпадение всех триграмм не гарантирует подстроку, поэтому лучшие кандидаты проверяются по тексту
+        Ranking ranking = new Ranking(ids, scores, likes, size);
+        List<Long> result = new ArrayList<>(Math.min(limit, size));
+        while (result.size() < limit && !ranking.isEmpty()) {
+            long filmId = ids[ranking.poll()];
+            Doc doc = current.docs.get(filmId);
+            if (doc != null && doc.containsAll(tokens, selected)) {
+                result.add(filmId);
+            }
+        }
+        return result;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c == 'ё') {
+                c = 'е';
+            }
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static String[] tokenize(String normalized) {
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        Set<String> tokens = new LinkedHashSet<>(Arrays.asList(normalized.split(" ")));
+        return tokens.stream().limit(MAX_QUERY_TOKENS).toArray(String[]::new);
+    }
+
+    private static long trigram(String word, int from) {
+        return ((long) word.charAt(from) << 32) | ((long) word.charAt(from + 1) << 16) | word.charAt(from + 2);
+    }
+
+    private static PostingList.Snapshot union(PostingList.Snapshot left, PostingList.Snapshot right) {
+        if (left.size == 0) {
+            return right;
+        }
+        if (right.size == 0) {
+            return left;
+        }
+        long[] result = new long[left.size + right.size];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.size && j < right.size) {
+            long a = left.ids[i];
+            long b = right.ids[j];
+            if (a <= b) {
+                result[size++] = a;
+                i++;
+                if (a == b) {
+                    j++;
+                }
+            } else {
+                result[size++] = b;
+                j++;
+            }
+        }
+        while (i < left.size) {
+            result[size++] = left.ids[i++];
+        }
+        while (j < right.size) {
+            result[size++] = right.ids[j++];
+        }
+        return new PostingList.Snapshot(result, size);
+    }
+
+    // Пересечение начинается с самого короткого списка и ведется в одном буфере
+    private static PostingList.Snapshot intersect(PostingList.Snapshot[] lists) {
+        PostingList.Snapshot[] bySize = lists.clone();
+        Arrays.sort(bySize, Comparator.comparingInt(list -> list.size));
+        long[] result = Arrays.copyOf(bySize[0].ids, bySize[0].size);
+        int size = bySize[0].size;
+        for (int l = 1; l < bySize.length && size > 0; l++) {
+            PostingList.Snapshot other = bySize[l];
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < size && from < other.size; i++) {
+                int position = Arrays.binarySearch(other.ids, from, other.size, result[i]);
+                if (position >= 0) {
+                    result[kept++] = result[i];
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+            size = kept;
+        }
+        return new PostingList.Snapshot(result, size);
+    }
+
+    private static final class Index {
+        private static final int LOCK_STRIPES = 64;
+
+        private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+        private final FieldIndex[] fields = new FieldIndex[FilmSearchField.values().length];
+        // Изменения одного фильма применяются по очереди, разных фильмов - параллельно
+        private final Object[] locks = new Object[LOCK_STRIPES];
+
+        private Index() {
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = new FieldIndex();
+            }
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        private Object lock(long filmId) {
+            return locks[Long.hashCode(filmId) & (LOCK_STRIPES - 1)];
+        }
+
+        private FieldIndex field(FilmSearchField field) {
+            return fields[field.ordinal()];
+        }
+
+        // Обновление фильма затрагивает только термины, которые появились или исчезли.
+        // Термины нового текста разбираются до взятия блокировки.
+        private void put(long filmId, Doc doc) {
+            Terms[] next = new Terms[fields.length];
+            for (FilmSearchField field : FilmSearchField.values()) {
+                next[field.ordinal()] = new Terms(doc.text(field));
+            }
+            synchronized (lock(filmId)) {
+                Doc previous = docs.put(filmId, doc);
+                for (FilmSearchField field : FilmSearchField.values()) {
+                    Terms before = previous == null ? Terms.NONE : new Terms(previous.text(field));
+                    field(field).update(filmId, before, next[field.ordinal()]);
+                }
+            }
+        }
+
+        private void remove(long filmId) {
+            synchronized (lock(filmId)) {
+                Doc previous = docs.remove(filmId);
+                if (previous == null) {
+                    return;
+                }
+                for (FilmSearchField field : FilmSearchField.values()) {
+                    field(field).update(filmId, new Terms(previous.text(field)), Terms.NONE);
+                }
+            }
+        }
+    }
+
+    // Слова и триграммы текста одного поля
+    private static final class Terms {
+        private static final Terms NONE = new Terms("");
+
+        private final Set<String> words;
+        private final Set<Long> trigrams;
+
+        private Terms(String text) {
+            words = text.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(text.split(" ")));
+            trigrams = new HashSet<>();
+            for (String word : words) {
+                for (int i = 0; i + 3 <= word.length(); i++) {
+                    trigrams.add(trigram(word, i));
+                }
+            }
+        }
+    }
+
+    private static final class FieldIndex {
+        private final Map<String, PostingList> words = new ConcurrentHashMap<>();
+        private final Map<Long, PostingList> trigrams = new ConcurrentHashMap<>();
+
+        private PostingList.Snapshot word(String word) {
+            PostingList postings = words.get(word);
+            return postings == null ? PostingList.EMPTY : postings.snapshot();
+        }
+
+        private PostingList.Snapshot match(String token) {
+            if (token.length() < 3) {
+                return word(token);
+            }
+            PostingList.Snapshot[] lists = new PostingList.Snapshot[token.length() - 2];
+            for (int i = 0; i < lists.length; i++) {
+                PostingList postings = trigrams.get(trigram(token, i));
+                if (postings == null) {
+                    return PostingList.EMPTY;
+                }
+                lists[i] = postings.snapshot();
+            }
+            return intersect(lists);
+        }
+
+        private void update(long filmId, Terms previous, Terms next) {
+            for (String word : previous.words) {
+                if (!next.words.contains(word)) {
+                    remove(words, word, filmId);
+                }
+            }
+            for (String word : next.words) {
+                if (!previous.words.contains(word)) {
+                    add(words, word, filmId);
+                }
+            }
+            for (Long key : previous.trigrams) {
+                if (!next.trigrams.contains(key)) {
+                    remove(trigrams, key, filmId);
+                }
+            }
+            for (Long key : next.trigrams) {
+                if (!previous.trigrams.contains(key)) {
+                    add(trigrams, key, filmId);
+                }
+            }
+        }
+
+        // Добавление и удаление идут внутри compute, чтобы опустевший список не удалили
+        // между его получением и добавлением в него id
+        private static <K> void add(Map<K, PostingList> postings, K term, long filmId) {
+            postings.compute(term, (k, list) -> {
+                PostingList target = list == null ? new PostingList() : list;
+                target.add(filmId);
+                return target;
+            });
+        }
+
+        private static <K> void remove(Map<K, PostingList> postings, K term, long filmId) {
+            postings.computeIfPresent(term, (k, list) -> {
+                list.remove(filmId);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    private static final class Doc {
+        private final String title;
+        private final String description;
+
+        private Doc(String title, String description) {
+            this.title = normalize(title);
+            this.description = normalize(description);
+        }
+
+        private String text(FilmSearchField field) {
+            return field == FilmSearchField.TITLE ? title : description;
+        }
+
+        private boolean containsAll(String[] tokens, FilmSearchField[] fields) {
+            for (String token : tokens) {
+                boolean found = false;
+                for (FilmSearchField field : fields) {
+                    if (contains(text(field), token)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Короткие слова запроса ищутся только целиком, длинные - как подстрока слова
+        private static boolean contains(String text, String token) {
+            if (token.length() >= 3) {
+                return text.contains(token);
+            }
+            int from = 0;
+            int position;
+            while ((position = text.indexOf(token, from)) >= 0) {
+                int end = position + token.length();
+                if ((position == 0 || text.charAt(position - 1) == ' ')
+                        && (end == text.length() || text.charAt(end) == ' ')) {
+                    return true;
+                }
+                from = position + 1;
+            }
+            return false;
+        }
+    }
+
+    // Куча номеров кандидатов: в корне лучший по (релевантность DESC, лайки DESC, id ASC)
+    private static final class Ranking {
+        private final long[] ids;
+        private final int[] scores;
+        private final int[] likes;
+        private final int[] heap;
+        private int size;
+
+        private Ranking(long[] ids, int[] scores, int[] likes, int size) {
+            this.ids = ids;
+            this.scores = scores;
+            this.likes = likes;
+            this.heap = new int[size];
+            this.size = size;
+            for (int i = 0; i < size; i++) {
+                heap[i] = i;
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int poll() {
+            int best = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return best;
+        }
+
+        private boolean better(int a, int b) {
+            if (scores[a] != scores[b]) {
+                return scores[a] > scores[b];
+            }
+            if (likes[a] != likes[b]) {
+                return likes[a] > likes[b];
+            }
+            return ids[a] < ids[b];
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int left = 2 * index + 1;
+                if (left >= size) {
+                    return;
+                }
+                int best = left;
+                int right = left + 1;
+                if (right < size && better(heap[right], heap[left])) {
+                    best = right;
+                }
+                if (!better(heap[best], heap[index])) {
+                    return;
+                }
+                int tmp = heap[index];
+                heap[index] = heap[best];
+                heap[best] = tmp;
+                index = best;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Списки смежности таблицы friendship: для каждого пользователя - отсортированный long[] id друзей
+// и обратный список тех, у кого он в друзьях. Массивы не изменяются на месте, а заменяются копией,
+// поэтому возвращаемые массивы можно читать без блокировок, но нельзя модифицировать.
+// Перезагрузка строит новый граф целиком и подменяет им текущий, так что читатели не видят его пустым;
+// изменения, пришедшие во время перезагрузки, повторяются на новом графе перед подменой.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FriendshipGraph {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Adjacency adjacency = new Adjacency();
+
+    private final Object journalLock = new Object();
+    // Изменения во время перезагрузки в порядке поступления; null, когда перезагрузки нет.
+    // Все изменения идемпотентны, поэтому повтор уже прочитанного из БД ничего не портит
+    private List<Consumer<Adjacency>> rebuildJournal;
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        synchronized (journalLock) {
+            rebuildJournal = new ArrayList<>();
+        }
+        Adjacency loaded = new Adjacency();
+        try {
+            Map<Long, LongIdSet.Builder> friendBuilders = new HashMap<>();
+            Map<Long, LongIdSet.Builder> followerBuilders = new HashMap<>();
+            jdbcTemplate.query("SELECT user_id, friend_id FROM friendship ORDER BY user_id, friend_id", rs -> {
+                long userId = rs.getLong("user_id");
+                long friendId = rs.getLong("friend_id");
+                friendBuilders.computeIfAbsent(userId, k -> LongIdSet.builder()).add(friendId);
+                followerBuilders.computeIfAbsent(friendId, k -> LongIdSet.builder()).add(userId);
+            });
+            friendBuilders.forEach((userId, builder) -> loaded.friends.put(userId, builder.buildArray()));
+            followerBuilders.forEach((userId, builder) -> loaded.followers.put(userId, builder.buildArray()));
+
+            synchronized (journalLock) {
+                rebuildJournal.forEach(change -> change.accept(loaded));
+                adjacency = loaded;
+            }
+        } finally {
+            synchronized (journalLock) {
+                rebuildJournal = null;
+            }
+        }
+        log.info("Граф дружбы загружен, пользователей с друзьями: {}", loaded.friends.size());
+    }
+
+    public long[] getFriends(long userId) {
+        return adjacency.friends.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public long[] getFollowers(long userId) {
+        return adjacency.followers.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public long[] getCommonFriends(long userId, long otherUserId) {
+        return SortedLongArrays.intersect(getFriends(userId), getFriends(otherUserId));
+    }
+
+    public void addFriend(long userId, long friendId) {
+        apply(current -> {
+            current.friends.compute(userId, (k, ids) -> SortedLongArrays.insert(ids, friendId));
+            current.followers.compute(friendId, (k, ids) -> SortedLongArrays.insert(ids, userId));
+        });
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        apply(current -> {
+            current.friends.computeIfPresent(userId, (k, ids) -> SortedLongArrays.remove(ids, friendId));
+            current.followers.computeIfPresent(friendId, (k, ids) -> SortedLongArrays.remove(ids, userId));
+        });
+    }
+
+    public void removeUser(long userId) {
+        apply(current -> removeUser(current, userId));
+    }
+
+    // Применяет изменение к текущему графу. Если оно пришло до подмены, перезагрузка повторит его из журнала
+    private void apply(Consumer<Adjacency> change) {
+        Adjacency target;
+        synchronized (journalLock) {
+            if (rebuildJournal != null) {
+                rebuildJournal.add(change);
+            }
+            target = adjacency;
+        }
+        change.accept(target);
+    }
+
+    private static void removeUser(Adjacency current, long userId) {
+        for (long friendId : current.friends.getOrDefault(userId, SortedLongArrays.EMPTY)) {
+            current.followers.computeIfPresent(friendId, (k, ids) -> SortedLongArrays.remove(ids, userId));
+        }
+        for (long followerId : current.followers.getOrDefault(userId, SortedLongArrays.EMPTY)) {
+            current.friends.computeIfPresent(followerId, (k, ids) -> SortedLongArrays.remove(ids, userId));
+        }
+        current.friends.remove(userId);
+        current.followers.remove(userId);
+    }
+
+    // Обе половины графа подменяются одной записью в volatile-поле
+    private static final class Adjacency {
+        private final Map<Long, long[]> friends = new ConcurrentHashMap<>();
+        private final Map<Long, long[]> followers = new ConcurrentHashMap<>();
+    }
+}
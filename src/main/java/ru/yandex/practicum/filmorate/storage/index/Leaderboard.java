@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+
+// Упорядоченный индекс фильмов по числу лайков: (likes DESC, id ASC)
+public class Leaderboard {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry entry) -> entry.likes)
+            .reversed()
+            .thenComparingLong(entry -> entry.filmId);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(ORDER);
+
+    public synchronized void put(long filmId, int likes) {
+        Entry previous = entries.remove(filmId);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        Entry entry = new Entry(filmId, Math.max(likes, 0));
+        entries.put(filmId, entry);
+        ranking.add(entry);
+    }
+
+    public synchronized void increment(long filmId, int delta) {
+        Entry previous = entries.get(filmId);
+        if (previous == null) {
+            return;
+        }
+        put(filmId, previous.likes + delta);
+    }
+
+    // В отличие от put не добавляет фильм, которого нет в индексе (например, уже удаленный)
+    public synchronized void update(long filmId, int likes) {
+        if (entries.containsKey(filmId)) {
+            put(filmId, likes);
+        }
+    }
+
+    public synchronized void remove(long filmId) {
+        Entry previous = entries.remove(filmId);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+    public synchronized boolean contains(long filmId) {
+        return entries.containsKey(filmId);
+    }
+
+    public synchronized int getLikes(long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.likes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized List<Long> top(int count) {
+        return top(count, filmId -> true);
+    }
+
+    // Первые count фильмов рейтинга, удовлетворяющих фильтру
+    public synchronized List<Long> top(int count, LongPredicate filter) {
+        List<Long> filmIds = new ArrayList<>(Math.min(count, entries.size()));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (iterator.hasNext() && filmIds.size() < count) {
+            long filmId = iterator.next().filmId;
+            if (filter.test(filmId)) {
+                filmIds.add(filmId);
+            }
+        }
+        return filmIds;
+    }
+
+    private static final class Entry {
+        private final long filmId;
+        private final int likes;
+
+        private Entry(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Двудольный граф таблицы film_likes: для пользователя - отсортированный long[] id понравившихся фильмов,
+// для фильма - отсортированный long[] id поставивших лайк пользователей. Как и в FriendshipGraph,
+// массивы заменяются копией при каждом изменении, поэтому новый массив означает новую версию вектора.
+// Перезагрузка строит новый граф целиком и подменяет им текущий, так что читатели не видят его пустым.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LikeGraph {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Adjacency adjacency = new Adjacency();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, LongIdSet.Builder> userBuilders = new HashMap<>();
+        Map<Long, LongIdSet.Builder> filmBuilders = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, user_id FROM film_likes ORDER BY user_id, film_id", rs -> {
+            long filmId = rs.getLong("film_id");
+            long userId = rs.getLong("user_id");
+            userBuilders.computeIfAbsent(userId, k -> LongIdSet.builder()).add(filmId);
+            filmBuilders.computeIfAbsent(filmId, k -> LongIdSet.builder()).add(userId);
+        });
+
+        Adjacency loaded = new Adjacency();
+        userBuilders.forEach((userId, builder) -> loaded.userFilms.put(userId, builder.build().toLongArray()));
+        filmBuilders.forEach((filmId, builder) -> loaded.filmUsers.put(filmId, builder.build().toLongArray()));
+        adjacency = loaded;
+        log.info("Граф лайков загружен, пользователей с лайками: {}, фильмов с лайками: {}",
+                loaded.userFilms.size(), loaded.filmUsers.size());
+    }
+
+    public long[] getUserFilms(long userId) {
+        return adjacency.userFilms.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public long[] getFilmUsers(long filmId) {
+        return adjacency.filmUsers.getOrDefault(filmId, SortedLongArrays.EMPTY);
+    }
+
+    public void likeAdded(long filmId, long userId) {
+        Adjacency current = adjacency;
+        current.userFilms.compute(userId, (k, ids) -> SortedLongArrays.insert(ids, filmId));
+        current.filmUsers.compute(filmId, (k, ids) -> SortedLongArrays.insert(ids, userId));
+    }
+
+    public void likeRemoved(long filmId, long userId) {
+        Adjacency current = adjacency;
+        current.userFilms.computeIfPresent(userId, (k, ids) -> SortedLongArrays.remove(ids, filmId));
+        current.filmUsers.computeIfPresent(filmId, (k, ids) -> SortedLongArrays.remove(ids, userId));
+    }
+
+    public void filmDeleted(long filmId) {
+        Adjacency current = adjacency;
+        for (long userId : current.filmUsers.getOrDefault(filmId, SortedLongArrays.EMPTY)) {
+            current.userFilms.computeIfPresent(userId, (k, ids) -> SortedLongArrays.remove(ids, filmId));
+        }
+        current.filmUsers.remove(filmId);
+    }
+
+    public void userDeleted(long userId) {
+        Adjacency current = adjacency;
+        for (long filmId : current.userFilms.getOrDefault(userId, SortedLongArrays.EMPTY)) {
+            current.filmUsers.computeIfPresent(filmId, (k, ids) -> SortedLongArrays.remove(ids, userId));
+        }
+        current.userFilms.remove(userId);
+    }
+
+    // Обе доли графа подменяются одной записью в volatile-поле
+    private static final class Adjacency {
+        private final Map<Long, long[]> userFilms = new ConcurrentHashMap<>();
+        private final Map<Long, long[]> filmUsers = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+// Счетчик long -> int на открытой адресации без упаковки ключей и значений.
+// Не потокобезопасен: каждый поток считает в свой экземпляр, затем результаты объединяются через merge.
+public class LongIntCounter {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] counts;
+    private boolean[] used;
+    private int size;
+
+    public LongIntCounter() {
+        this(16);
+    }
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    public void increment(long key, int delta) {
+        int slot = findSlot(keys, used, key);
+        if (used[slot]) {
+            counts[slot] += delta;
+            return;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    public int get(long key) {
+        int slot = findSlot(keys, used, key);
+        return used[slot] ? counts[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void merge(LongIntCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.used[i]) {
+                increment(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    // Ключи с наибольшими значениями (при равенстве - с меньшим ключом), не больше limit
+    public long[] top(int limit) {
+        int k = Math.min(limit, size);
+        if (k <= 0) {
+            return new long[0];
+        }
+        // min-heap из номеров слотов: в корне худший из отобранных кандидатов
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (!used[slot]) {
+                continue;
+            }
+            if (heapSize < k) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (better(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return result;
+    }
+
+    private boolean better(int slot, int otherSlot) {
+        if (counts[slot] != counts[otherSlot]) {
+            return counts[slot] > counts[otherSlot];
+        }
+        return keys[slot] < keys[otherSlot];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], heap[index])) {
+                break;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= heapSize) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < heapSize && better(heap[left], heap[right])) {
+                worst = right;
+            }
+            if (!better(heap[index], heap[worst])) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(keys, used, oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int findSlot(long[] keys, boolean[] used, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+
+// Список id по возрастанию для одного термина инвертированного индекса.
+// Читатели берут снимок (массив + размер) без блокировок. Добавление id больше последнего дописывает
+// элемент за границей опубликованного размера без копирования; вставка в середину и удаление создают
+// новый массив, поэтому элементы в пределах опубликованного снимка никогда не меняются.
+final class PostingList {
+
+    static final Snapshot EMPTY = new Snapshot(new long[0], 0);
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    boolean isEmpty() {
+        return snapshot.size == 0;
+    }
+
+    synchronized void add(long id) {
+        Snapshot current = snapshot;
+        long[] ids = current.ids;
+        int size = current.size;
+        if (size > 0 && id <= ids[size - 1]) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            long[] copy = new long[Math.max(ids.length, size + 1)];
+            System.arraycopy(ids, 0, copy, 0, position);
+            copy[position] = id;
+            System.arraycopy(ids, position, copy, position + 1, size - position);
+            snapshot = new Snapshot(copy, size + 1);
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+        }
+        ids[size] = id;
+        snapshot = new Snapshot(ids, size + 1);
+    }
+
+    synchronized void remove(long id) {
+        Snapshot current = snapshot;
+        int position = Arrays.binarySearch(current.ids, 0, current.size, id);
+        if (position < 0) {
+            return;
+        }
+        long[] copy = new long[current.size - 1];
+        System.arraycopy(current.ids, 0, copy, 0, position);
+        System.arraycopy(current.ids, position + 1, copy, position, current.size - position - 1);
+        snapshot = new Snapshot(copy, copy.length);
+    }
+
+    static final class Snapshot {
+        final long[] ids;
+        final int size;
+
+        Snapshot(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
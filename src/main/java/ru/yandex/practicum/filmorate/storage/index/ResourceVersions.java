@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Счетчики версий для ETag: по каждому фильму и по спискам (популярные, жанры, рейтинги MPA).
+// Счетчики живут в памяти, поэтому в тег входит момент запуска приложения - после перезапуска
+// старые теги клиентов гарантированно не совпадут. Версия читается до загрузки данных, так что
+// при гонке клиент получит более новые данные со старым тегом и просто перезапросит их, но не 304.
+// Хранилища меняют версии только после фиксации транзакции, иначе новый тег мог бы достаться старым данным.
+// В тег входят и параметры, от которых зависит тело ответа (режим лайков, выборка популярных).
+@Component
+public class ResourceVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, Long> films = new ConcurrentHashMap<>();
+    // Меняется, когда данные всех фильмов могли измениться разом (например, пересчет счетчиков лайков)
+    private final AtomicLong filmsGeneration = new AtomicLong();
+    private final AtomicLong popular = new AtomicLong();
+    private final AtomicLong genres = new AtomicLong();
+    private final AtomicLong mpa = new AtomicLong();
+
+    public String filmTag(long filmId, LikesMode likesMode) {
+        return "film-" + filmId + "-" + likesMode.name().toLowerCase(Locale.ROOT) + "-" + epoch + "-"
+                + filmsGeneration.get() + "-" + films.getOrDefault(filmId, 0L);
+    }
+
+    public String popularTag(int count, Long genreId, Integer year, LikesMode likesMode) {
+        return "popular-" + count + "-" + genreId + "-" + year + "-" + likesMode.name().toLowerCase(Locale.ROOT) + "-"
+                + epoch + "-" + popular.get();
+    }
+
+    public String genresTag() {
+        return "genres-" + epoch + "-" + genres.get();
+    }
+
+    public String mpaTag() {
+        return "mpa-" + epoch + "-" + mpa.get();
+    }
+
+    // Фильм создан, изменен, удален или у него поменялись лайки
+    public void filmChanged(long filmId) {
+        films.merge(filmId, 1L, Long::sum);
+        popular.incrementAndGet();
+    }
+
+    public void filmsChanged(Collection<Long> filmIds) {
+        filmIds.forEach(this::filmChanged);
+    }
+
+    // На удаленный фильм отвечаем 404 еще до сравнения тегов, поэтому его счетчик больше не нужен
+    public void filmDeleted(long filmId) {
+        films.remove(filmId);
+        popular.incrementAndGet();
+    }
+
+    public void allFilmsChanged() {
+        filmsGeneration.incrementAndGet();
+        popular.incrementAndGet();
+    }
+
+    // Число фильмов с отдельным счетчиком версий
+    int trackedFilmCount() {
+        return films.size();
+    }
+
+    // Названия жанров и рейтингов входят в ответы с фильмами, поэтому меняются и их теги
+    public void genresChanged() {
+        genres.incrementAndGet();
+        allFilmsChanged();
+    }
+
+    public void mpaChanged() {
+        mpa.incrementAndGet();
+        allFilmsChanged();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+
+// Ограниченный обход графа на два шага: для каждой вершины-источника перебираются ее соседи
+// и для каждого подходящего соседа увеличивается счетчик. Каждый источник вносит не больше своей доли
+// бюджета maxExpansion, чтобы вершины с огромной степенью не вытесняли остальные. Большие наборы
+// источников делятся на поддиапазоны и считаются в пуле fork/join с последующим слиянием счетчиков.
+// Если соседей больше доли, берется равномерная выборка с шагом по всему отсортированному списку,
+// а не его начало - иначе в счет попадали бы только самые старые id. Результат в этом случае
+// приблизительный: счетчики занижены примерно пропорционально доле, а соседи между точками выборки
+// не учитываются вовсе, поэтому порядок кандидатов с близкими счетчиками может отличаться от точного.
+public final class TwoHopCounter {
+
+    // Размер поддиапазона источников, который одна задача обходит без дальнейшего деления
+    private static final int SEQUENTIAL_SOURCES = 32;
+
+    private final ForkJoinPool pool;
+    private final int maxExpansion;
+    private final int parallelThreshold;
+
+    public TwoHopCounter(ForkJoinPool pool, int maxExpansion, int parallelThreshold) {
+        this.pool = pool;
+        this.maxExpansion = maxExpansion;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public LongIntCounter count(long[] sources, LongFunction<long[]> neighbours, LongPredicate accept) {
+        if (sources.length == 0) {
+            return new LongIntCounter();
+        }
+        int perSourceLimit = Math.max(1, maxExpansion / sources.length);
+        boolean parallel = sources.length >= parallelThreshold;
+        ExpansionTask task = new ExpansionTask(sources, neighbours, accept, perSourceLimit, parallel,
+                0, sources.length);
+        return parallel ? pool.invoke(task) : task.compute();
+    }
+
+    private static final class ExpansionTask extends RecursiveTask<LongIntCounter> {
+        private final long[] sources;
+        private final LongFunction<long[]> neighbours;
+        private final LongPredicate accept;
+        private final int perSourceLimit;
+        private final boolean parallel;
+        private final int from;
+        private final int to;
+
+        private ExpansionTask(long[] sources, LongFunction<long[]> neighbours, LongPredicate accept,
+                              int perSourceLimit, boolean parallel, int from, int to) {
+            this.sources = sources;
+            this.neighbours = neighbours;
+            this.accept = accept;
+            this.perSourceLimit = perSourceLimit;
+            this.parallel = parallel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongIntCounter compute() {
+            if (parallel && to - from > SEQUENTIAL_SOURCES) {
+                int middle = (from + to) >>> 1;
+                ExpansionTask left = new ExpansionTask(sources, neighbours, accept, perSourceLimit, true,
+                        from, middle);
+                ExpansionTask right = new ExpansionTask(sources, neighbours, accept, perSourceLimit, true,
+                        middle, to);
+                left.fork();
+                LongIntCounter counter = right.compute();
+                counter.merge(left.join());
+                return counter;
+            }
+
+            LongIntCounter counter = new LongIntCounter();
+            for (int i = from; i < to; i++) {
+                long[] targets = neighbours.apply(sources[i]);
+                int bound = Math.min(targets.length, perSourceLimit);
+                for (int j = 0; j < bound; j++) {
+                    long target = targets[sampleIndex(j, bound, targets.length)];
+                    if (accept.test(target)) {
+                        counter.increment(target, 1);
+                    }
+                }
+            }
+            return counter;
+        }
+
+        // j-я из bound точек, равномерно расставленных по списку длины length; при bound == length - сам j
+        private static int sampleIndex(int j, int bound, int length) {
+            return (int) ((long) j * length / bound);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+// Размечает вызовы хранилищ как чтение (get*, search*, exists*) или запись (все остальное).
+// Срабатывает раньше транзакционного прокси, чтобы маршрут был известен до первого запроса транзакции.
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReadRoutingAspect {
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.FilmStorage+.*(..))"
+            + " || execution(public * ru.yandex.practicum.filmorate.storage.UserStorage+.*(..))")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        boolean readOnly = method.startsWith("get") || method.startsWith("search") || method.startsWith("exists");
+        RoutingContext.enter(readOnly);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            RoutingContext.exit(readOnly);
+        }
+    }
+}
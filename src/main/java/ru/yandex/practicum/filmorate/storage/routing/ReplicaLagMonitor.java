@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+// Оценивает отставание реплики: периодически пишет метку времени в основную базу
+// и читает последнюю дошедшую до реплики. Отставание считается от момента проверки,
+// поэтому остановка репликации или самого монитора тоже выключает чтение с реплики.
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+    private volatile long replicaBeatMillis;
+
+    public ReplicaLagMonitor(JdbcTemplate primary, JdbcTemplate replica, long maxLagMs) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.datasource.replica.heartbeat-interval-ms:1000}")
+    public void heartbeat() {
+        try {
+            primary.update("MERGE INTO replication_heartbeat (id, beat_millis) KEY(id) VALUES (1, ?)",
+                    System.currentTimeMillis());
+        } catch (DataAccessException e) {
+            log.warn("Не удалось записать метку репликации в основную базу: {}", e.getMessage());
+        }
+        try {
+            Long beat = replica.queryForObject("SELECT beat_millis FROM replication_heartbeat WHERE id = 1",
+                    Long.class);
+            replicaBeatMillis = beat == null ? 0 : beat;
+        } catch (DataAccessException e) {
+            replicaBeatMillis = 0;
+            log.warn("Реплика недоступна, чтение переключено на основную базу: {}", e.getMessage());
+        }
+    }
+
+    public long getLagMillis() {
+        long beat = replicaBeatMillis;
+        return beat == 0 ? Long.MAX_VALUE : Math.max(0, System.currentTimeMillis() - beat);
+    }
+
+    public boolean isReplicaUsable() {
+        return getLagMillis() <= maxLagMs;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Чтение через хранилища вне транзакций и в транзакциях только для чтения идет на реплику; запись,
+// транзакции на запись и чтение после записи в том же запросе - в основную базу.
+// Включается свойством filmorate.datasource.replica.enabled; без него используется одна база из spring.datasource.
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfig implements WebMvcConfigurer {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("filmorate.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${filmorate.datasource.replica.url}") String url,
+                                              @Value("${filmorate.datasource.replica.username:sa}") String username,
+                                              @Value("${filmorate.datasource.replica.password:}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${filmorate.datasource.replica.max-lag-ms:5000}") long maxLagMs) {
+        return new ReplicaLagMonitor(new JdbcTemplate(primary), new JdbcTemplate(replica), maxLagMs);
+    }
+
+    // Отдельный binder, а не регистрация в replicaLagMonitor: реестр метрик при создании сам требует
+    // все источники данных (метрики пулов), включая маршрутизирующий, который зависит от монитора
+    @Bean
+    public MeterBinder replicaLagMetrics(ReplicaLagMonitor monitor) {
+        return registry -> Gauge.builder("filmorate.datasource.replica.lag", monitor, m -> m.getLagMillis() / 1000.0)
+                .description("Отставание реплики; бесконечность, если реплика недоступна")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    // Без репликации средствами СУБД (как у файловой H2) реплику наполняет копирование снимков
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.datasource.replica.snapshot.enabled", havingValue = "true")
+    public ReplicaSnapshotCopier replicaSnapshotCopier(@Qualifier("primaryDataSource") DataSource primary,
+                                                       @Value("${filmorate.datasource.replica.url}") String url,
+                                                       @Value("${filmorate.datasource.replica.username:sa}") String username,
+                                                       @Value("${filmorate.datasource.replica.password:}") String password) {
+        return new ReplicaSnapshotCopier(primary, new DriverManagerDataSource(url, username, password));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(lagMonitor);
+        routing.setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, primary, DataSourceRoute.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public ReadRoutingAspect readRoutingAspect() {
+        return new ReadRoutingAspect();
+    }
+
+    @Bean
+    public TaskDecorator routingContextPropagation() {
+        return RoutingContext::propagate;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AsyncHandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                RoutingContext.beginRequest();
+                return true;
+            }
+
+            @Override
+            public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                                       Object handler) {
+                RoutingContext.endRequest();
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                RoutingContext.endRequest();
+            }
+        });
+    }
+}
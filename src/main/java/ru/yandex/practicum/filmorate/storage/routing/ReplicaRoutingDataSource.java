@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Выбирает базу при получении соединения. Используется через LazyConnectionDataSourceProxy,
+// поэтому выбор происходит при первом запросе, а не при открытии транзакции. Транзакция держит
+// одно соединение до конца, поэтому транзакция на запись целиком идет в основную базу, даже если
+// начинается с чтения; реплика используется только вне транзакций и в транзакциях только для чтения.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return DataSourceRoute.PRIMARY;
+        }
+        if (RoutingContext.isReplicaAllowed() && lagMonitor.isReplicaUsable()) {
+            return DataSourceRoute.REPLICA;
+        }
+        return DataSourceRoute.PRIMARY;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Замена репликации средствами СУБД для конфигурации на H2, где ее нет: при запуске создает на реплике
+// схему из schema.sql, затем периодически копирует в нее согласованный снимок основной базы.
+// Таблица replication_heartbeat копируется в том же снимке, поэтому ReplicaLagMonitor видит
+// отставание реплики как время с последнего копирования. При настоящей репликации копирование выключается.
+@Slf4j
+public class ReplicaSnapshotCopier {
+
+    // Порядок внешних ключей: справочники, затем сущности, затем связи
+    private static final List<String> TABLES = List.of("mpa_ratings", "genres", "users", "films",
+            "film_genre", "film_likes", "friendship", "replication_heartbeat");
+    private static final int BATCH_SIZE = 1000;
+
+    private final DataSource primary;
+    // Пул реплики открывает соединения только для чтения, поэтому для записи снимка нужен свой источник
+    private final DataSource replicaWriter;
+
+    public ReplicaSnapshotCopier(DataSource primary, DataSource replicaWriter) {
+        this.primary = primary;
+        this.replicaWriter = replicaWriter;
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replicaWriter);
+        log.info("Схема реплики создана");
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.datasource.replica.snapshot.interval-ms:2000}",
+            fixedDelayString = "${filmorate.datasource.replica.snapshot.interval-ms:2000}")
+    public void copy() {
+        long start = System.nanoTime();
+        try (Connection source = primary.getConnection(); Connection target = replicaWriter.getConnection()) {
+            source.setReadOnly(true);
+            source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            source.setAutoCommit(false);
+            target.setAutoCommit(false);
+            try {
+                List<String> reversed = new ArrayList<>(TABLES);
+                Collections.reverse(reversed);
+                try (Statement statement = target.createStatement()) {
+                    for (String table : reversed) {
+                        statement.executeUpdate("DELETE FROM " + table);
+                    }
+                }
+                int rows = 0;
+                for (String table : TABLES) {
+                    rows += copyTable(source, target, table);
+                }
+                target.commit();
+                source.commit();
+                log.debug("Снимок основной базы скопирован на реплику: строк {}, {} мс",
+                        rows, (System.nanoTime() - start) / 1_000_000);
+            } catch (SQLException | RuntimeException e) {
+                target.rollback();
+                source.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            log.warn("Не удалось скопировать снимок основной базы на реплику: {}", e.getMessage());
+        }
+    }
+
+    private static int copyTable(Connection source, Connection target, String table) throws SQLException {
+        int rows = 0;
+        try (Statement select = source.createStatement();
+             ResultSet rs = select.executeQuery("SELECT * FROM " + table)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columns = metaData.getColumnCount();
+            StringBuilder names = new StringBuilder();
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 1; i <= columns; i++) {
+                names.append(i > 1 ? ", " : "").append(metaData.getColumnName(i));
+                placeholders.append(i > 1 ? ", ?" : "?");
+            }
+            String sql = "INSERT INTO " + table + " (" + names + ") VALUES (" + placeholders + ")";
+            try (PreparedStatement insert = target.prepareStatement(sql)) {
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        insert.setObject(i, rs.getObject(i));
+                    }
+                    insert.addBatch();
+                    if (++rows % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+// Состояние маршрутизации текущего потока: идет ли сейчас чтение или запись через хранилище
+// и была ли запись в рамках текущего HTTP-запроса. После записи все чтения этого запроса
+// идут в основную базу, чтобы запрос видел собственные изменения (read-your-writes).
+public final class RoutingContext {
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private RoutingContext() {
+    }
+
+    public static void beginRequest() {
+        State state = STATE.get();
+        state.inRequest = true;
+        state.wrote = false;
+    }
+
+    public static void endRequest() {
+        STATE.remove();
+    }
+
+    static void enter(boolean readOnly) {
+        State state = STATE.get();
+        if (readOnly) {
+            state.reads++;
+        } else {
+            state.writes++;
+            state.wrote = true;
+        }
+    }
+
+    static void exit(boolean readOnly) {
+        State state = STATE.get();
+        if (readOnly) {
+            state.reads--;
+        } else {
+            state.writes--;
+        }
+        // Вне HTTP-запроса (фоновые задачи) липкость к основной базе действует только до конца вызова
+        if (!state.inRequest && state.reads == 0 && state.writes == 0) {
+            STATE.remove();
+        }
+    }
+
+    // Реплика допустима только для чтения, не вложенного в запись, и если запрос еще ничего не записал
+    static boolean isReplicaAllowed() {
+        State state = STATE.get();
+        return state.reads > 0 && state.writes == 0 && !state.wrote;
+    }
+
+    // Задача пула читает с реплики, только если это было разрешено потоку, который ее запустил
+    static Runnable propagate(Runnable task) {
+        if (!isReplicaAllowed()) {
+            return task;
+        }
+        return () -> {
+            enter(true);
+            try {
+                task.run();
+            } finally {
+                exit(true);
+            }
+        };
+    }
+
+    private static final class State {
+        private int reads;
+        private int writes;
+        private boolean wrote;
+        private boolean inRequest;
+    }
+}
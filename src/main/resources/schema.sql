@@ -31,7 +31,8 @@ CREATE TABLE IF NOT EXISTS films (
     description VARCHAR(200),
     release_date DATE,  -- Добавьте эту строку!
     duration INTEGER,
-    mpa_rating_id BIGINT REFERENCES mpa_ratings(id) ON DELETE RESTRICT
+    mpa_rating_id BIGINT REFERENCES mpa_ratings(id) ON DELETE RESTRICT,
+    likes_count INTEGER NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS film_genre (
@@ -55,7 +56,14 @@ CREATE TABLE IF NOT EXISTS friendship (
     CHECK (user_id != friend_id)
 );
 
+-- Метка времени для оценки отставания реплики, пишется только в основную базу
+CREATE TABLE IF NOT EXISTS replication_heartbeat (
+    id INT PRIMARY KEY,
+    beat_millis BIGINT NOT NULL
+);
+
 CREATE INDEX IF NOT EXISTS idx_films_mpa_rating ON films(mpa_rating_id);
+CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films(likes_count DESC, id);
 CREATE INDEX IF NOT EXISTS idx_film_genre_film_id ON film_genre(film_id);
 CREATE INDEX IF NOT EXISTS idx_film_genre_genre_id ON film_genre(genre_id);
 CREATE INDEX IF NOT EXISTS idx_film_likes_film_id ON film_likes(film_id);
@@ -1,17 +1,38 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -25,6 +46,19 @@ class FilmControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private FilmPopularityIndex popularityIndex;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    @Qualifier("filmDbStorage")
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private Film validFilm;
 
     @BeforeEach
@@ -147,4 +181,422 @@ class FilmControllerTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].id").exists());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnFilmsPageWithNextCursor() throws Exception {
+        long first = createFilm();
+        long second = createFilm();
+
+        mockMvc.perform(get("/films").param("after", String.valueOf(first - 1)).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(first))
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(first)));
+
+        mockMvc.perform(get("/films").param("after", String.valueOf(first)).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(second));
+    }
+
+    @Test
+    void shouldReturnFirstPageWithoutPagingParameters() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i <= CursorPage.DEFAULT_LIMIT; i++) {
+            films.add(ratedFilm());
+        }
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(films)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(CursorPage.DEFAULT_LIMIT))
+                .andExpect(header().exists(CursorPage.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void shouldRejectTooLargePageLimit() throws Exception {
+        mockMvc.perform(get("/films").param("limit", "100000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnOnlyLikesCountInCountMode() throws Exception {
+        long filmId = createFilm();
+        long userId = createUser("count-mode");
+        like(filmId, userId);
+
+        mockMvc.perform(get("/films")
+                        .param("after", String.valueOf(filmId - 1))
+                        .param("limit", "1")
+                        .param("likes", "count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(filmId))
+                .andExpect(jsonPath("$[0].likesCount").value(1))
+                .andExpect(jsonPath("$[0].likes").doesNotExist());
+
+        mockMvc.perform(get("/films/{id}", filmId).param("likes", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").doesNotExist())
+                .andExpect(jsonPath("$.likes").doesNotExist());
+    }
+
+    @Test
+    void shouldRejectUnknownLikesMode() throws Exception {
+        mockMvc.perform(get("/films").param("likes", "all"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldExportEveryFilmAsNdjson() throws Exception {
+        long filmId = createFilm();
+
+        MvcResult started = mockMvc.perform(get("/films/export").param("likes", "count"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        // Каждая строка - отдельный JSON-объект фильма, без обрамляющего массива
+        String[] lines = body.split("\n");
+        Set<Long> exported = new HashSet<>();
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            assertTrue(node.isObject());
+            assertTrue(node.has("likesCount"));
+            exported.add(node.get("id").asLong());
+        }
+        assertEquals(lines.length, exported.size());
+        assertTrue(exported.contains(filmId));
+
+        // Выгрузка совпадает с обходом всех страниц по курсору
+        Set<Long> all = new HashSet<>();
+        String cursor = null;
+        do {
+            MockHttpServletResponse page = mockMvc.perform(get("/films")
+                            .param("after", cursor == null ? "0" : cursor)
+                            .param("limit", String.valueOf(CursorPage.MAX_LIMIT)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse();
+            Arrays.stream(objectMapper.readValue(page.getContentAsString(StandardCharsets.UTF_8), Film[].class))
+                    .map(Film::getId)
+                    .forEach(all::add);
+            cursor = page.getHeader(CursorPage.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+        assertEquals(all, exported);
+    }
+
+    @Test
+    void shouldReportBatchItemsSeparately() throws Exception {
+        Film invalid = ratedFilm();
+        invalid.setReleaseDate(LocalDate.of(1800, 1, 1));
+
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(ratedFilm(), invalid))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.items[0].id").exists())
+                .andExpect(jsonPath("$.items[1].error").exists());
+    }
+
+    @Test
+    void shouldReportDatabaseErrorOnlyForFailedBatchItem() throws Exception {
+        // Название длиннее столбца проходит валидацию, но отвергается БД
+        Film tooLong = ratedFilm();
+        tooLong.setName("A".repeat(201));
+        Set<Long> indexedBefore = popularityIndex.getFilmIds();
+
+        String response = mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(ratedFilm(), tooLong))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.items[0].id").exists())
+                .andExpect(jsonPath("$.items[1].id").doesNotExist())
+                .andExpect(jsonPath("$.items[1].error").exists())
+                .andReturn().getResponse().getContentAsString();
+        long createdId = objectMapper.readTree(response).at("/items/0/id").asLong();
+
+        // Откаченная пакетная вставка не оставила фантомов в индексе - добавился только записанный фильм
+        Set<Long> added = popularityIndex.getFilmIds();
+        added.removeAll(indexedBefore);
+        assertEquals(Set.of(createdId), added);
+    }
+
+    @Test
+    void shouldFilterPopularFilmsByGenreAndYear() throws Exception {
+        long user1 = createUser("popular1");
+        long user2 = createUser("popular2");
+        long comedy2001 = createFilm(1L, LocalDate.of(2001, 5, 1));
+        long drama2001 = createFilm(2L, LocalDate.of(2001, 6, 1));
+        long comedy2002 = createFilm(1L, LocalDate.of(2002, 1, 1));
+
+        like(drama2001, user1);
+        like(drama2001, user2);
+        like(comedy2001, user1);
+
+        List<Long> byGenreAndYear = popularIds("?count=1000&genreId=1&year=2001");
+        assertTrue(byGenreAndYear.contains(comedy2001));
+        assertFalse(byGenreAndYear.contains(drama2001));
+        assertFalse(byGenreAndYear.contains(comedy2002));
+
+        List<Long> byYear = popularIds("?count=1000&year=2001");
+        assertTrue(byYear.indexOf(drama2001) < byYear.indexOf(comedy2001));
+        assertFalse(byYear.contains(comedy2002));
+
+        List<Long> byGenre = popularIds("?count=1000&genreId=1");
+        assertTrue(byGenre.contains(comedy2002));
+        assertFalse(byGenre.contains(drama2001));
+    }
+
+    @Test
+    void shouldRejectPopularCountOutOfRange() throws Exception {
+        mockMvc.perform(get("/films/popular").param("count", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "1000"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldReturnFilmWithGenresAndLikes() throws Exception {
+        long filmId = createFilm(2L, LocalDate.of(2001, 5, 1));
+        long withoutLikes = createFilm(1L, LocalDate.of(2001, 5, 1));
+        long user1 = createUser("details1");
+        long user2 = createUser("details2");
+        like(filmId, user2);
+        like(filmId, user1);
+
+        mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mpa.id").value(1))
+                .andExpect(jsonPath("$.mpa.name").exists())
+                .andExpect(jsonPath("$.genres[0].id").value(2))
+                .andExpect(jsonPath("$.genres[0].name").exists())
+                .andExpect(jsonPath("$.likes.length()").value(2))
+                .andExpect(jsonPath("$.likes[0]").value(Math.min(user1, user2)));
+
+        mockMvc.perform(get("/films/{id}", withoutLikes).param("likes", "count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(0))
+                .andExpect(jsonPath("$.likes").doesNotExist());
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", Long.MAX_VALUE, user1))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldAnswerNotModifiedUntilFilmChanges() throws Exception {
+        long filmId = createFilm(1L, LocalDate.of(2001, 5, 1));
+        long userId = createUser("etag");
+
+        String etag = mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/films/{id}", filmId).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        like(filmId, userId);
+
+        mockMvc.perform(get("/films/{id}", filmId).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(filmId));
+    }
+
+    @Test
+    void shouldTagEachLikesProjectionSeparately() throws Exception {
+        long filmId = createFilm();
+
+        String etag = mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/films/{id}", filmId).param("likes", "count").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(0));
+    }
+
+    @Test
+    void shouldAnswerNotFoundForMissingFilmEvenWithMatchingTag() throws Exception {
+        mockMvc.perform(get("/films/{id}", Long.MAX_VALUE).header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldChangeFilmTagOnlyAfterCommit() throws Exception {
+        long filmId = createFilm();
+        long userId = createUser("etag-commit");
+        String tag = resourceVersions.filmTag(filmId, LikesMode.IDS);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            filmStorage.addLike(filmId, userId);
+            assertEquals(tag, resourceVersions.filmTag(filmId, LikesMode.IDS));
+        });
+        assertNotEquals(tag, resourceVersions.filmTag(filmId, LikesMode.IDS));
+
+        String likedTag = resourceVersions.filmTag(filmId, LikesMode.IDS);
+        transactionTemplate.executeWithoutResult(status -> {
+            filmStorage.removeLike(filmId, userId);
+            status.setRollbackOnly();
+        });
+        assertEquals(likedTag, resourceVersions.filmTag(filmId, LikesMode.IDS));
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForPopularUntilLikesChange() throws Exception {
+        long filmId = createFilm();
+        long userId = createUser("etag-popular");
+
+        String etag = mockMvc.perform(get("/films/popular").param("count", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/films/popular").param("count", "5").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        // Другая выборка - другое тело ответа и другой тег
+        mockMvc.perform(get("/films/popular").param("count", "3").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/popular").param("count", "5").param("likes", "none")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        like(filmId, userId);
+
+        mockMvc.perform(get("/films/popular").param("count", "5").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldValidatePopularCountBeforeTag() throws Exception {
+        mockMvc.perform(get("/films/popular").param("count", "0").header("If-None-Match", "*"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldNotServeStaleFilmFromCacheAfterChanges() throws Exception {
+        long filmId = createFilm(1L, LocalDate.of(2001, 5, 1));
+        long userId = createUser("cache");
+
+        mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(jsonPath("$.likes.length()").value(0));
+        mockMvc.perform(get("/films/{id}", filmId).param("likes", "count"))
+                .andExpect(jsonPath("$.likesCount").value(0));
+
+        like(filmId, userId);
+
+        mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(jsonPath("$.likes[0]").value(userId));
+        mockMvc.perform(get("/films/{id}", filmId).param("likes", "count"))
+                .andExpect(jsonPath("$.likesCount").value(1));
+
+        Film updated = ratedFilm();
+        updated.setId(filmId);
+        updated.setName("Новое название");
+        mockMvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updated)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(jsonPath("$.name").value("Новое название"))
+                .andExpect(jsonPath("$.genres.length()").value(0))
+                .andExpect(jsonPath("$.likes[0]").value(userId));
+
+        mockMvc.perform(delete("/users/{id}", userId))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(jsonPath("$.likes.length()").value(0));
+        mockMvc.perform(get("/films/{id}", filmId).param("likes", "count"))
+                .andExpect(jsonPath("$.likesCount").value(0));
+        mockMvc.perform(get("/users/{id}", userId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldReturnNotFoundWhenRemovingLikeOfUnknownFilmOrUser() throws Exception {
+        long filmId = createFilm();
+        long userId = createUser("remove-like");
+
+        // Лайка не было, но оба существуют - повторное удаление не ошибка
+        mockMvc.perform(delete("/films/{id}/like/{userId}", filmId, userId))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", filmId, Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", Long.MAX_VALUE, userId))
+                .andExpect(status().isNotFound());
+    }
+
+    private List<Long> popularIds(String query) throws Exception {
+        String response = mockMvc.perform(get("/films/popular" + query))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return Arrays.stream(objectMapper.readValue(response, Film[].class))
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private long createFilm() throws Exception {
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ratedFilm())))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+
+    private long createFilm(Long genreId, LocalDate releaseDate) throws Exception {
+        Film film = ratedFilm();
+        film.setReleaseDate(releaseDate);
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        film.setGenres(List.of(genre));
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+
+    private long createUser(String login) throws Exception {
+        User user = new User();
+        user.setLogin(login + System.nanoTime());
+        user.setEmail(user.getLogin() + "@mail.ru");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        String response = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, User.class).getId();
+    }
+
+    private void like(long filmId, long userId) throws Exception {
+        mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userId))
+                .andExpect(status().isOk());
+    }
+
+    private Film ratedFilm() {
+        Film film = new Film();
+        film.setName(validFilm.getName());
+        film.setDescription(validFilm.getDescription());
+        film.setReleaseDate(validFilm.getReleaseDate());
+        film.setDuration(validFilm.getDuration());
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        return film;
+    }
+}
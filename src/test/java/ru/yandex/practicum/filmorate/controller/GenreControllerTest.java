@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class GenreControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private GenreDbStorage genreStorage;
+
+    @Test
+    void shouldReturnGenresWithTag() throws Exception {
+        String etag = mockMvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/genres").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/genres/{id}", 1).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldAnswerNotFoundForMissingGenreEvenWithMatchingTag() throws Exception {
+        mockMvc.perform(get("/genres/{id}", 9999).header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldChangeGenreAndFilmTagsWhenGenreIsRenamed() throws Exception {
+        long filmId = createFilm(1L, LocalDate.of(2002, 2, 2));
+        String name = genreStorage.getGenreById(1L).orElseThrow().getName();
+        String genresTag = mockMvc.perform(get("/genres"))
+                .andReturn().getResponse().getHeader("ETag");
+        String filmTag = mockMvc.perform(get("/films/{id}", filmId))
+                .andReturn().getResponse().getHeader("ETag");
+        try {
+            jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = 1", "Переименованный жанр");
+            genreStorage.refresh();
+
+            mockMvc.perform(get("/genres").header("If-None-Match", genresTag))
+                    .andExpect(status().isOk());
+            // Название жанра входит в ответ с фильмом, поэтому и тег фильма меняется
+            mockMvc.perform(get("/films/{id}", filmId).header("If-None-Match", filmTag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.genres[0].name").value("Переименованный жанр"));
+        } finally {
+            jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = 1", name);
+            genreStorage.refresh();
+        }
+    }
+
+    private long createFilm(Long genreId, LocalDate releaseDate) throws Exception {
+        Film film = new Film();
+        film.setName("Tagged film");
+        film.setDescription("Description");
+        film.setReleaseDate(releaseDate);
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        film.setGenres(List.of(genre));
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MpaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MpaDbStorage mpaStorage;
+
+    @Test
+    void shouldReturnMpaRatingsWithTag() throws Exception {
+        String etag = mockMvc.perform(get("/mpa"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/mpa").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/mpa/{id}", 1).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldAnswerNotFoundForMissingMpaEvenWithMatchingTag() throws Exception {
+        mockMvc.perform(get("/mpa/{id}", 9999).header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldChangeMpaAndFilmTagsWhenMpaIsRenamed() throws Exception {
+        long filmId = createFilm(1L, LocalDate.of(2002, 2, 2));
+        String name = mpaStorage.getMpaById(1L).orElseThrow().getName();
+        String mpaTag = mockMvc.perform(get("/mpa"))
+                .andReturn().getResponse().getHeader("ETag");
+        String filmTag = mockMvc.perform(get("/films/{id}", filmId))
+                .andReturn().getResponse().getHeader("ETag");
+        try {
+            jdbcTemplate.update("UPDATE mpa_ratings SET name = ? WHERE id = 1", "PG-renamed");
+            mpaStorage.refresh();
+
+            mockMvc.perform(get("/mpa").header("If-None-Match", mpaTag))
+                    .andExpect(status().isOk());
+            // Название рейтинга входит в ответ с фильмом, поэтому и тег фильма меняется
+            mockMvc.perform(get("/films/{id}", filmId).header("If-None-Match", filmTag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.mpa.name").value("PG-renamed"));
+        } finally {
+            jdbcTemplate.update("UPDATE mpa_ratings SET name = ? WHERE id = 1", name);
+            mpaStorage.refresh();
+        }
+    }
+
+    private long createFilm(Long genreId, LocalDate releaseDate) throws Exception {
+        Film film = new Film();
+        film.setName("Tagged film");
+        film.setDescription("Description");
+        film.setReleaseDate(releaseDate);
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        film.setGenres(List.of(genre));
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+}
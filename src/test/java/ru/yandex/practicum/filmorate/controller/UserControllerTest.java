@@ -8,6 +8,8 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
@@ -208,4 +210,188 @@ class UserControllerTest {
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.name").value("Custom Name"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldImportNdjsonAndReportDuplicatesPerRow() throws Exception {
+        String body = "{\"email\":\"import1@mail.ru\",\"login\":\"import1\"}\n" +
+                "{\"email\":\"import1@mail.ru\",\"login\":\"import2\"}\n" +
+                "not json\n" +
+                "{\"email\":\"import3@mail.ru\",\"login\":\"import3\"}\n";
+
+        mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(4))
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.items[1].error").exists())
+                .andExpect(jsonPath("$.items[2].error").exists())
+                .andExpect(jsonPath("$.rowsPerSecond").exists());
+    }
+
+    @Test
+    void shouldSuggestFriendsByMutualFriendCount() throws Exception {
+        long a = createUser("suggest-a");
+        long b = createUser("suggest-b");
+        long c = createUser("suggest-c");
+        long d = createUser("suggest-d");
+        long e = createUser("suggest-e");
+
+        // a дружит с b и c; d в друзьях у обоих, e - только у b
+        addFriend(a, b);
+        addFriend(a, c);
+        addFriend(b, d);
+        addFriend(c, d);
+        addFriend(b, e);
+
+        mockMvc.perform(get("/users/{id}/friends/suggestions", a))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(d))
+                .andExpect(jsonPath("$[1].id").value(e));
+
+        // Новая дружба должна сбросить закэшированный результат
+        addFriend(a, d);
+
+        mockMvc.perform(get("/users/{id}/friends/suggestions", a).param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(e));
+
+        mockMvc.perform(get("/users/{id}/friends/suggestions", a).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRecommendFilmsLikedBySimilarUsers() throws Exception {
+        long a = createUser("recommend-a");
+        long b = createUser("recommend-b");
+        long c = createUser("recommend-c");
+        long f1 = createFilm();
+        long f2 = createFilm();
+        long f3 = createFilm();
+        long f4 = createFilm();
+
+        // c пересекается с a на один фильм, b - на два, поэтому фильм b идет первым
+        like(f1, a);
+        like(f2, a);
+        like(f1, b);
+        like(f2, b);
+        like(f3, b);
+        like(f1, c);
+        like(f4, c);
+
+        mockMvc.perform(get("/users/{id}/recommendations", a))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(f3))
+                .andExpect(jsonPath("$[1].id").value(f4));
+
+        // Собственный лайк пользователя сразу убирает фильм из рекомендаций
+        like(f3, a);
+
+        mockMvc.perform(get("/users/{id}/recommendations", a).param("likes", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(f4))
+                .andExpect(jsonPath("$[0].likes").doesNotExist());
+    }
+
+    @Test
+    void shouldRecomputeRecommendationsWhenNeighbourLikes() throws Exception {
+        long a = createUser("recommend-neighbour-a");
+        long b = createUser("recommend-neighbour-b");
+        long f1 = createFilm();
+        long f2 = createFilm();
+        long f3 = createFilm();
+        like(f1, a);
+        like(f1, b);
+        like(f2, b);
+
+        mockMvc.perform(get("/users/{id}/recommendations", a))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(f2));
+
+        // Лайк соседа заменяет его вектор в графе, и кэшированный результат пересчитывается без фонового прохода
+        like(f3, b);
+
+        mockMvc.perform(get("/users/{id}/recommendations", a))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void shouldWriteFriendshipsAndLikesIdempotently() throws Exception {
+        long a = createUser("idempotent-a");
+        long b = createUser("idempotent-b");
+        long film = createFilm();
+
+        addFriend(a, b);
+        addFriend(a, b);
+        like(film, a);
+        like(film, a);
+
+        mockMvc.perform(get("/users/{id}/friends", a))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/films/{id}", film).param("likes", "count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(1));
+
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", a, Long.MAX_VALUE))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.description").value("Пользователь с id " + Long.MAX_VALUE + " не найден"));
+        mockMvc.perform(put("/films/{id}/like/{userId}", film, Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/users/{id}/friends/{friendId}", Long.MAX_VALUE, a))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.description").value("Пользователь с id " + Long.MAX_VALUE + " не найден"));
+
+        // Повторное удаление уже удаленной связи - не ошибка
+        mockMvc.perform(delete("/users/{id}/friends/{friendId}", a, b))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/users/{id}/friends/{friendId}", a, b))
+                .andExpect(status().isOk());
+    }
+
+    private long createFilm() throws Exception {
+        Film film = new Film();
+        film.setName("Recommended film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+
+    private void like(long filmId, long userId) throws Exception {
+        mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userId))
+                .andExpect(status().isOk());
+    }
+
+    private long createUser(String login) throws Exception {
+        User user = new User();
+        user.setLogin(login + System.nanoTime());
+        user.setEmail(user.getLogin() + "@mail.ru");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        String response = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, User.class).getId();
+    }
+
+    private void addFriend(long userId, long friendId) throws Exception {
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, friendId))
+                .andExpect(status().isOk());
+    }
+}
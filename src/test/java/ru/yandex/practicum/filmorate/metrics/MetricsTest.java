@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Порог 1 отправляет в пул гидрации любой список; отдельная база в памяти, потому что
+// контекст с другими свойствами заново применил бы schema.sql к общей файловой базе
+@SpringBootTest(properties = {
+        "filmorate.hydration.parallel-threshold=1",
+        "spring.datasource.url=jdbc:h2:mem:metrics-test;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void shouldRecordStorageTimingsAndQueriesPerRequest() throws Exception {
+        long filmId = createFilm();
+
+        mockMvc.perform(get("/films/{id}", filmId))
+                .andExpect(status().isOk());
+
+        Timer timer = registry.find(StorageMetricsAspect.TIMER)
+                .tag("storage", "FilmDbStorage")
+                .tag("method", "getFilmById")
+                .tag("exception", "none")
+                .timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+
+        DistributionSummary queries = registry.find(QueryCountInterceptor.SUMMARY)
+                .tag("method", "GET")
+                .tag("uri", "/films/{id}")
+                .summary();
+        assertNotNull(queries);
+        assertTrue(queries.count() > 0);
+        assertTrue(queries.max() > 0);
+    }
+
+    @Test
+    void shouldRecordHydrationStagesAndCountPooledQueriesInRequest() throws Exception {
+        createFilm();
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk());
+
+        Timer genres = registry.find("filmorate.hydration.stage").tag("stage", "genres").timer();
+        Timer likes = registry.find("filmorate.hydration.stage").tag("stage", "likes").timer();
+        assertNotNull(genres);
+        assertNotNull(likes);
+        assertTrue(genres.count() > 0);
+        assertTrue(likes.count() > 0);
+        assertTrue(registry.get("filmorate.hydration.queue").timer().count() > 0);
+
+        // Фильмы, жанры из пула гидрации и лайки - не меньше трех обращений за запрос
+        DistributionSummary queries = registry.find(QueryCountInterceptor.SUMMARY)
+                .tag("method", "GET")
+                .tag("uri", "/films")
+                .summary();
+        assertNotNull(queries);
+        assertTrue(queries.max() >= 3);
+    }
+
+    private long createFilm() throws Exception {
+        Film film = new Film();
+        film.setName("Metrics Film");
+        film.setDescription("Metrics description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(90);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIdSetTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void shouldSortAndRemoveDuplicates() {
+        LongIdSet ids = LongIdSet.builder().add(5).add(1).add(5).add(3).build();
+
+        assertEquals(3, ids.size());
+        assertArrayEquals(new long[]{1, 3, 5}, ids.toLongArray());
+        assertTrue(ids.contains(3L));
+        assertFalse(ids.contains(4L));
+        assertEquals(Set.of(1L, 3L, 5L), ids);
+    }
+
+    @Test
+    void shouldKeepJsonShapeOfFilmLikes() throws Exception {
+        Film film = new Film();
+        film.setName("Film");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setLikes(LongIdSet.of(3, 1, 2));
+
+        String json = objectMapper.writeValueAsString(film);
+        assertTrue(json.contains("\"likes\":[1,2,3]"));
+
+        Film restored = objectMapper.readValue(json, Film.class);
+        assertTrue(restored.getLikes() instanceof LongIdSet);
+        assertEquals(Set.of(1L, 2L, 3L), restored.getLikes());
+    }
+}
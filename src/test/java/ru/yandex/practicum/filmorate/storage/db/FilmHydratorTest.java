@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Порог 1 отправил бы жанры любого списка в пул гидрации; отдельная база в памяти, как в MetricsTest
+@SpringBootTest(properties = {
+        "filmorate.hydration.parallel-threshold=1",
+        "spring.datasource.url=jdbc:h2:mem:hydrator-test;DB_CLOSE_DELAY=-1"
+})
+class FilmHydratorTest {
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void shouldSeeUncommittedGenresInsideTransaction() {
+        transactionTemplate.executeWithoutResult(status -> {
+            long filmId = filmStorage.createFilm(filmWithGenre(2L)).getId();
+
+            List<Film> page = filmStorage.getFilms(filmId - 1, 1, LikesMode.IDS);
+
+            assertEquals(filmId, page.get(0).getId());
+            assertEquals(List.of(2L), genreIds(page.get(0)));
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void shouldLoadGenresOnPoolOutsideTransaction() {
+        long filmId = filmStorage.createFilm(filmWithGenre(3L)).getId();
+
+        List<Film> page = filmStorage.getFilms(filmId - 1, 1, LikesMode.IDS);
+
+        assertEquals(List.of(3L), genreIds(page.get(0)));
+        assertNotNull(page.get(0).getLikes());
+    }
+
+    private static List<Long> genreIds(Film film) {
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static Film filmWithGenre(Long genreId) {
+        Film film = new Film();
+        film.setName("Hydrated Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(90);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        film.setGenres(List.of(genre));
+        return film;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class FilmLikesReconcilerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmPopularityIndex popularityIndex;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    private FilmLikesReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        // Без ожидания повторной проверки: параллельных записей в тесте нет
+        reconciler = new FilmLikesReconciler(jdbcTemplate, popularityIndex, resourceVersions, entityCache, 0);
+        reconciler.reconcile();
+    }
+
+    @Test
+    void shouldRepairCounterInDatabaseAndIndex() throws Exception {
+        long filmId = createFilm(1L, LocalDate.of(2000, 1, 1));
+        like(filmId, createUser("reconcile"));
+        jdbcTemplate.update("UPDATE films SET likes_count = 5 WHERE id = ?", filmId);
+
+        assertEquals(1, reconciler.reconcile());
+        assertEquals(1, likesCount(filmId));
+        assertEquals(1, popularityIndex.getLikes(filmId));
+    }
+
+    @Test
+    void shouldRepairIndexThatDriftedFromDatabase() throws Exception {
+        long filmId = createFilm(1L, LocalDate.of(2000, 1, 1));
+        like(filmId, createUser("reconcile-index"));
+        popularityIndex.likesChanged(filmId, 7);
+
+        assertEquals(1, reconciler.reconcile());
+        assertEquals(1, popularityIndex.getLikes(filmId));
+        assertEquals(1, likesCount(filmId));
+    }
+
+    @Test
+    void shouldRestoreMissingFilmAndDropPhantom() throws Exception {
+        long filmId = createFilm(2L, LocalDate.of(1999, 3, 1));
+        like(filmId, createUser("reconcile-missing"));
+        popularityIndex.filmDeleted(filmId);
+
+        Film phantom = new Film();
+        phantom.setId(Long.MAX_VALUE - 1);
+        phantom.setReleaseDate(LocalDate.of(1999, 3, 1));
+        popularityIndex.filmRestored(phantom, 100);
+
+        assertEquals(2, reconciler.reconcile());
+        assertTrue(popularityIndex.contains(filmId));
+        assertEquals(1, popularityIndex.getLikes(filmId));
+        assertTrue(popularityIndex.getTopFilmIds(Integer.MAX_VALUE, 2L, 1999).contains(filmId));
+        assertFalse(popularityIndex.contains(phantom.getId()));
+        assertEquals(0, reconciler.reconcile());
+    }
+
+    private long createFilm(Long genreId, LocalDate releaseDate) throws Exception {
+        Film film = new Film();
+        film.setName("Reconciled film");
+        film.setDescription("Description");
+        film.setReleaseDate(releaseDate);
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        film.setGenres(List.of(genre));
+
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(film)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+
+    private long createUser(String login) throws Exception {
+        User user = new User();
+        user.setLogin(login + System.nanoTime());
+        user.setEmail(user.getLogin() + "@mail.ru");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+
+        String response = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, User.class).getId();
+    }
+
+    private void like(long filmId, long userId) throws Exception {
+        mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userId))
+                .andExpect(status().isOk());
+    }
+
+    private int likesCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?", Integer.class, filmId);
+    }
+}
@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.db.LikeWriteBehindBuffer.Durability;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class LikeWriteBehindBufferTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final LikeGraph likeGraph = new LikeGraph(null);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private LikeWriteBehindBuffer buffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    void shouldWriteQueuedOperationsInBatchesOfConfiguredSize() throws InterruptedException {
+        buffer = buffer(100, 3, 50, Durability.ASYNC);
+        for (long userId = 1; userId <= 7; userId++) {
+            buffer.addLike(1, userId);
+        }
+        buffer.start();
+
+        awaitCondition(() -> buffer.getFlushedOperations() == 7);
+        assertEquals(List.of(3, 3, 1), mergeBatchSizes(3));
+        assertEquals(3, buffer.getFlushCount());
+        assertEquals(7, likeGraph.getFilmUsers(1).length);
+    }
+
+    @Test
+    void shouldFlushIncompleteBatchAfterInterval() throws InterruptedException {
+        buffer = buffer(100, 100, 50, Durability.ASYNC);
+        buffer.start();
+
+        long started = System.nanoTime();
+        buffer.addLike(1, 1);
+        awaitCondition(() -> buffer.getFlushedOperations() == 1);
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(List.of(1), mergeBatchSizes(1));
+        assertEquals(0, buffer.getQueueDepth());
+    }
+
+    @Test
+    void shouldRejectOperationsWhenQueueIsFull() {
+        buffer = buffer(2, 10, 50, Durability.ASYNC);
+        buffer.addLike(1, 1);
+        buffer.addLike(1, 2);
+
+        assertThrows(RejectedExecutionException.class, () -> buffer.addLike(1, 3));
+        assertEquals(1, buffer.getRejectedOperations());
+        assertEquals(2, buffer.getQueueDepth());
+    }
+
+    @Test
+    void shouldReturnOnlyAfterBatchIsWrittenInSyncMode() {
+        buffer = buffer(100, 100, 50, Durability.SYNC);
+        buffer.start();
+
+        buffer.addLike(1, 1);
+
+        // Вызов вернулся - значит, пакет уже записан и граф лайков обновлен
+        assertEquals(List.of(1), mergeBatchSizes(1));
+        assertArrayEquals(new long[]{1}, likeGraph.getFilmUsers(1));
+    }
+
+    @Test
+    void shouldReportFailedRowToCallerInSyncMode() {
+        failMergeFor(2);
+        buffer = buffer(100, 100, 50, Durability.SYNC);
+        buffer.start();
+
+        assertThrows(IllegalArgumentException.class, () -> buffer.addLike(1, 2));
+        assertEquals(1, buffer.getFailedOperations());
+        assertEquals(0, likeGraph.getFilmUsers(1).length);
+    }
+
+    @Test
+    void shouldCountFailedRowsInAsyncMode() throws InterruptedException {
+        failMergeFor(2);
+        buffer = buffer(100, 100, 50, Durability.ASYNC);
+        buffer.start();
+
+        buffer.addLike(1, 1);
+        buffer.addLike(1, 2);
+
+        awaitCondition(() -> buffer.getFlushedOperations() == 2);
+        assertEquals(1, buffer.getFailedOperations());
+        assertArrayEquals(new long[]{1}, likeGraph.getFilmUsers(1));
+    }
+
+    @Test
+    void shouldTreatDuplicateRowAsAppliedInSyncMode() {
+        when(jdbcTemplate.batchUpdate(startsWith("MERGE"), anyList()))
+                .thenThrow(new DuplicateKeyException("лайк уже есть"));
+        when(jdbcTemplate.update(startsWith("MERGE"), any(), any()))
+                .thenThrow(new DuplicateKeyException("лайк уже есть"));
+        buffer = buffer(100, 100, 50, Durability.SYNC);
+        buffer.start();
+
+        buffer.addLike(1, 1);
+
+        assertEquals(0, buffer.getFailedOperations());
+        assertArrayEquals(new long[]{1}, likeGraph.getFilmUsers(1));
+    }
+
+    @Test
+    void shouldPublishQueueDepthAndFlushLatency() throws InterruptedException {
+        buffer = buffer(100, 100, 50, Durability.ASYNC);
+        buffer.addLike(1, 1);
+        buffer.addLike(1, 2);
+
+        assertEquals(2, registry.get("filmorate.likes.write-behind.queue.depth").gauge().value());
+
+        buffer.start();
+        awaitCondition(() -> buffer.getFlushedOperations() == 2);
+
+        assertEquals(0, registry.get("filmorate.likes.write-behind.queue.depth").gauge().value());
+        Timer flush = registry.get("filmorate.likes.write-behind.flush").timer();
+        assertEquals(1, flush.count());
+        assertTrue(flush.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(2, registry.get("filmorate.likes.write-behind.operations.flushed").functionCounter().count());
+    }
+
+    private LikeWriteBehindBuffer buffer(int capacity, int batchSize, long flushIntervalMs, Durability durability) {
+        EntityCache entityCache = new EntityCache(new SimpleMeterRegistry(), false, 10, 10, 1000);
+        return new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate, new FilmPopularityIndex(null), likeGraph,
+                new ResourceVersions(), entityCache, registry, true, capacity, batchSize, flushIntervalMs, 10, durability);
+    }
+
+    // Пакет с указанным пользователем падает, построчная запись падает только на его строке
+    private void failMergeFor(long userId) {
+        when(jdbcTemplate.batchUpdate(startsWith("MERGE"), anyList()))
+                .thenThrow(new DataIntegrityViolationException("нет пользователя"));
+        when(jdbcTemplate.update(startsWith("MERGE"), any(), eq(userId)))
+                .thenThrow(new DataIntegrityViolationException("нет пользователя"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> mergeBatchSizes(int batches) {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(batches)).batchUpdate(startsWith("MERGE"), captor.capture());
+        return captor.getAllValues().stream()
+                .map(List::size)
+                .collect(Collectors.toList());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнилось за 5 секунд");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.index.ResourceVersions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ReferenceCacheTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private GenreDbStorage genreStorage;
+
+    @Autowired
+    private MpaDbStorage mpaStorage;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Test
+    void shouldHandOutCopiesOfCachedGenres() {
+        Genre genre = genreStorage.getGenreById(1L).orElseThrow();
+        String name = genre.getName();
+        genre.setName("Изменено снаружи");
+
+        assertEquals(name, genreStorage.getGenreById(1L).orElseThrow().getName());
+        assertEquals(name, genreStorage.getAllGenres().get(0).getName());
+    }
+
+    @Test
+    void shouldServeGenresFromMemoryUntilRefresh() {
+        String name = genreStorage.getGenreById(1L).orElseThrow().getName();
+        String tag = resourceVersions.genresTag();
+        try {
+            jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = 1", "Новое название");
+            assertEquals(name, genreStorage.getGenreById(1L).orElseThrow().getName());
+
+            genreStorage.refresh();
+            assertEquals("Новое название", genreStorage.getGenreById(1L).orElseThrow().getName());
+            assertNotEquals(tag, resourceVersions.genresTag());
+
+            // Повторное обновление без изменений в БД тег не меняет
+            String refreshedTag = resourceVersions.genresTag();
+            genreStorage.refresh();
+            assertEquals(refreshedTag, resourceVersions.genresTag());
+        } finally {
+            jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = 1", name);
+            genreStorage.refresh();
+        }
+    }
+
+    @Test
+    void shouldReloadGenresAndChangeTagOnInvalidate() {
+        String name = genreStorage.getGenreById(1L).orElseThrow().getName();
+        try {
+            jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = 1", "Новое название");
+            String tag = resourceVersions.genresTag();
+
+            genreStorage.invalidate();
+            assertEquals("Новое название", genreStorage.getGenreById(1L).orElseThrow().getName());
+            assertNotEquals(tag, resourceVersions.genresTag());
+
+            // В отличие от refresh(), тег меняется и без изменений в БД
+            String invalidatedTag = resourceVersions.genresTag();
+            genreStorage.invalidate();
+            assertNotEquals(invalidatedTag, resourceVersions.genresTag());
+        } finally {
+            jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = 1", name);
+            genreStorage.refresh();
+        }
+    }
+
+    @Test
+    void shouldServeMpaFromMemoryUntilRefresh() {
+        MpaRating mpa = mpaStorage.getMpaById(1L).orElseThrow();
+        String tag = resourceVersions.mpaTag();
+        try {
+            jdbcTemplate.update("UPDATE mpa_ratings SET name = ? WHERE id = 1", "G-new");
+            assertEquals(mpa.getName(), mpaStorage.getMpaById(1L).orElseThrow().getName());
+            assertTrue(mpaStorage.existsById(1L));
+            assertFalse(mpaStorage.existsById(Long.MAX_VALUE));
+
+            mpaStorage.refresh();
+            assertEquals("G-new", mpaStorage.getMpaById(1L).orElseThrow().getName());
+            assertNotEquals(tag, resourceVersions.mpaTag());
+        } finally {
+            jdbcTemplate.update("UPDATE mpa_ratings SET name = ? WHERE id = 1", mpa.getName());
+            mpaStorage.refresh();
+        }
+    }
+
+    @Test
+    void shouldReloadMpaAndChangeTagOnInvalidate() {
+        MpaRating mpa = mpaStorage.getMpaById(1L).orElseThrow();
+        try {
+            jdbcTemplate.update("UPDATE mpa_ratings SET name = ? WHERE id = 1", "G-new");
+            String tag = resourceVersions.mpaTag();
+
+            mpaStorage.invalidate();
+            assertEquals("G-new", mpaStorage.getMpaById(1L).orElseThrow().getName());
+            assertNotEquals(tag, resourceVersions.mpaTag());
+        } finally {
+            jdbcTemplate.update("UPDATE mpa_ratings SET name = ? WHERE id = 1", mpa.getName());
+            mpaStorage.refresh();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearchField;
+
+import java.sql.ResultSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FilmSearchIndexTest {
+
+    private static final Set<FilmSearchField> ALL = EnumSet.allOf(FilmSearchField.class);
+
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex(null);
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex(null, popularityIndex);
+
+    @Test
+    void shouldFindSubstringsCaseInsensitively() {
+        save(1, "Матрица", "Хакер узнает правду о мире");
+        save(2, "Interstellar", "Space travel through a wormhole");
+
+        assertEquals(List.of(1L), searchIndex.search("МАТР", ALL, 10));
+        assertEquals(List.of(2L), searchIndex.search("stell", ALL, 10));
+        assertEquals(List.of(2L), searchIndex.search("worm space", ALL, 10));
+        assertTrue(searchIndex.search("worm матр", ALL, 10).isEmpty());
+    }
+
+    @Test
+    void shouldRankTitleAndWholeWordsHigherThenByLikes() {
+        save(1, "Night", "A story about a knight");
+        save(2, "Knight rider", "Cars");
+        save(3, "Dark knight", "Batman");
+        popularityIndex.likeAdded(3);
+
+        assertEquals(List.of(3L, 2L, 1L), searchIndex.search("knight", ALL, 10));
+        assertEquals(List.of(3L), searchIndex.search("knight", ALL, 1));
+        assertEquals(List.of(1L), searchIndex.search("knight", EnumSet.of(FilmSearchField.DESCRIPTION), 10));
+    }
+
+    @Test
+    void shouldNotMatchTrigramsSpreadAcrossWords() {
+        save(1, "abcx ybcd", "");
+
+        assertTrue(searchIndex.search("abcd", ALL, 10).isEmpty());
+    }
+
+    @Test
+    void shouldMatchShortTokensAsWholeWords() {
+        save(1, "Up", "");
+        save(2, "Cupid", "");
+
+        assertEquals(List.of(1L), searchIndex.search("up", ALL, 10));
+    }
+
+    @Test
+    void shouldReindexUpdatedAndDropDeletedFilms() {
+        save(1, "Old title", "");
+        save(1, "New title", "");
+
+        assertTrue(searchIndex.search("old", ALL, 10).isEmpty());
+        assertEquals(List.of(1L), searchIndex.search("new", ALL, 10));
+
+        searchIndex.filmDeleted(1);
+        assertTrue(searchIndex.search("title", ALL, 10).isEmpty());
+    }
+
+    @Test
+    void shouldDropPostingListsThatBecameEmpty() {
+        save(1, "Common", "");
+        int terms = searchIndex.termCount();
+
+        save(2, "Common unique", "");
+        save(2, "Common", "");
+        assertEquals(terms, searchIndex.termCount());
+
+        searchIndex.filmDeleted(1);
+        searchIndex.filmDeleted(2);
+        assertEquals(0, searchIndex.termCount());
+    }
+
+    @Test
+    void shouldReplayChangesMadeDuringRebuild() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        FilmSearchIndex rebuilt = new FilmSearchIndex(jdbcTemplate, popularityIndex);
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(1L, 2L);
+        when(rs.getString("name")).thenReturn("Stale title", "Deleted meanwhile");
+        when(rs.getString("description")).thenReturn("", "");
+        doAnswer(invocation -> {
+            // Пока БД читается, фильм 1 переименовывают, фильм 2 удаляют, фильм 3 создают
+            rebuilt.filmSaved(film(1, "Fresh title"));
+            rebuilt.filmDeleted(2);
+            rebuilt.filmSaved(film(3, "Created meanwhile"));
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        rebuilt.rebuild();
+
+        assertEquals(List.of(1L), rebuilt.search("fresh", ALL, 10));
+        assertTrue(rebuilt.search("stale", ALL, 10).isEmpty());
+        assertTrue(rebuilt.search("deleted", ALL, 10).isEmpty());
+        assertEquals(List.of(3L), rebuilt.search("created", ALL, 10));
+    }
+
+    private static Film film(long id, String name) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription("");
+        return film;
+    }
+
+    private void save(long id, String name, String description) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
+        if (!popularityIndex.getTopFilmIds(Integer.MAX_VALUE).contains(id)) {
+            popularityIndex.filmCreated(film);
+        }
+        searchIndex.filmSaved(film);
+    }
+}
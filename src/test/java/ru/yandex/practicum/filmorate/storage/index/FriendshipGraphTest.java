@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FriendshipGraphTest {
+
+    private final FriendshipGraph graph = new FriendshipGraph(null);
+
+    @Test
+    void shouldKeepFriendListsSorted() {
+        graph.addFriend(1, 5);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 4);
+        graph.addFriend(1, 3);
+
+        assertArrayEquals(new long[]{3, 4, 5}, graph.getFriends(1));
+        assertArrayEquals(new long[]{1}, graph.getFollowers(3));
+    }
+
+    @Test
+    void shouldIntersectFriendLists() {
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 7);
+        graph.addFriend(4, 3);
+        graph.addFriend(4, 7);
+        graph.addFriend(4, 9);
+
+        assertArrayEquals(new long[]{3, 7}, graph.getCommonFriends(1, 4));
+    }
+
+    @Test
+    void shouldRemoveUserFromAllLists() {
+        graph.addFriend(1, 2);
+        graph.addFriend(2, 1);
+        graph.addFriend(3, 2);
+
+        graph.removeUser(2);
+
+        assertEquals(0, graph.getFriends(1).length);
+        assertEquals(0, graph.getFriends(3).length);
+        assertEquals(0, graph.getFollowers(1).length);
+    }
+
+    @Test
+    void shouldServePreviousGraphUntilRebuildCompletes() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        FriendshipGraph rebuilt = new FriendshipGraph(jdbcTemplate);
+        rebuilt.addFriend(1, 2);
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("user_id")).thenReturn(1L);
+        when(rs.getLong("friend_id")).thenReturn(3L);
+        doAnswer(invocation -> {
+            // Пока строки читаются из БД, читатели видят прежний граф, а не пустой
+            assertArrayEquals(new long[]{2}, rebuilt.getFriends(1));
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        rebuilt.rebuild();
+
+        assertArrayEquals(new long[]{3}, rebuilt.getFriends(1));
+        assertArrayEquals(new long[]{1}, rebuilt.getFollowers(3));
+        assertEquals(0, rebuilt.getFollowers(2).length);
+    }
+
+    @Test
+    void shouldKeepChangesMadeDuringRebuild() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        FriendshipGraph rebuilt = new FriendshipGraph(jdbcTemplate);
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("user_id")).thenReturn(1L, 1L);
+        when(rs.getLong("friend_id")).thenReturn(3L, 4L);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1, RowCallbackHandler.class);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            // Изменения, закоммиченные после чтения строк, но до подмены графа
+            rebuilt.addFriend(1, 5);
+            rebuilt.removeFriend(1, 4);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        rebuilt.rebuild();
+
+        assertArrayEquals(new long[]{3, 5}, rebuilt.getFriends(1));
+        assertArrayEquals(new long[]{1}, rebuilt.getFollowers(5));
+        assertEquals(0, rebuilt.getFollowers(4).length);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+
+    @Test
+    void shouldOrderByLikesDescAndIdAsc() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(1, 5);
+        leaderboard.put(2, 7);
+        leaderboard.put(3, 5);
+
+        assertEquals(List.of(2L, 1L, 3L), leaderboard.top(10));
+        assertEquals(List.of(2L), leaderboard.top(1));
+    }
+
+    @Test
+    void shouldMoveFilmAfterIncrement() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(1, 1);
+        leaderboard.put(2, 0);
+
+        leaderboard.increment(2, 1);
+        leaderboard.increment(2, 1);
+
+        assertEquals(List.of(2L, 1L), leaderboard.top(2));
+        assertEquals(2, leaderboard.getLikes(2));
+    }
+
+    @Test
+    void shouldIgnoreUnknownFilmsAndRemoveDeleted() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(1, 3);
+
+        leaderboard.increment(42, 1);
+        leaderboard.remove(1);
+
+        assertTrue(leaderboard.top(10).isEmpty());
+        assertFalse(leaderboard.contains(42));
+    }
+
+    @Test
+    void shouldSkipFilteredFilmsUntilCountIsReached() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.put(1, 9);
+        leaderboard.put(2, 8);
+        leaderboard.put(3, 7);
+        leaderboard.put(4, 6);
+
+        assertEquals(List.of(2L, 4L), leaderboard.top(2, filmId -> filmId % 2 == 0));
+        assertEquals(List.of(3L), leaderboard.top(5, filmId -> filmId == 3));
+    }
+}
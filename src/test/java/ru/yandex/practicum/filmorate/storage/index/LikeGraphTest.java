@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeGraphTest {
+
+    private final LikeGraph graph = new LikeGraph(null);
+
+    @Test
+    void shouldKeepBothDirectionsInSync() {
+        graph.likeAdded(10, 1);
+        graph.likeAdded(5, 1);
+        graph.likeAdded(10, 2);
+
+        assertArrayEquals(new long[]{5, 10}, graph.getUserFilms(1));
+        assertArrayEquals(new long[]{1, 2}, graph.getFilmUsers(10));
+
+        graph.likeRemoved(10, 1);
+
+        assertArrayEquals(new long[]{5}, graph.getUserFilms(1));
+        assertArrayEquals(new long[]{2}, graph.getFilmUsers(10));
+    }
+
+    @Test
+    void shouldReplaceVectorOnlyWhenItChanges() {
+        graph.likeAdded(10, 1);
+        long[] before = graph.getUserFilms(1);
+
+        graph.likeAdded(10, 1);
+        assertSame(before, graph.getUserFilms(1));
+
+        graph.likeAdded(11, 1);
+        assertNotSame(before, graph.getUserFilms(1));
+    }
+
+    @Test
+    void shouldDropDeletedFilmsAndUsers() {
+        graph.likeAdded(10, 1);
+        graph.likeAdded(11, 1);
+        graph.likeAdded(10, 2);
+
+        graph.filmDeleted(10);
+        assertArrayEquals(new long[]{11}, graph.getUserFilms(1));
+        assertArrayEquals(new long[0], graph.getUserFilms(2));
+
+        graph.userDeleted(1);
+        assertArrayEquals(new long[0], graph.getFilmUsers(11));
+    }
+}
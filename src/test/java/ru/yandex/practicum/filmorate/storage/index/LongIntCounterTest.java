@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntCounterTest {
+
+    @Test
+    void shouldCountAndGrowBeyondInitialCapacity() {
+        LongIntCounter counter = new LongIntCounter(4);
+        for (long key = 1; key <= 1000; key++) {
+            counter.increment(key, 1);
+            counter.increment(key * 1_000_003L, 2);
+        }
+
+        assertEquals(2000, counter.size());
+        assertEquals(1, counter.get(500));
+        assertEquals(2, counter.get(500 * 1_000_003L));
+        assertEquals(0, counter.get(-1));
+    }
+
+    @Test
+    void shouldReturnTopByCountDescAndKeyAsc() {
+        LongIntCounter counter = new LongIntCounter();
+        counter.increment(5, 1);
+        counter.increment(3, 2);
+        counter.increment(9, 2);
+        counter.increment(7, 3);
+
+        assertArrayEquals(new long[]{7, 3, 9, 5}, counter.top(10));
+        assertArrayEquals(new long[]{7, 3}, counter.top(2));
+        assertArrayEquals(new long[0], new LongIntCounter().top(3));
+    }
+
+    @Test
+    void shouldMergeCounters() {
+        LongIntCounter left = new LongIntCounter();
+        left.increment(1, 1);
+        left.increment(2, 1);
+        LongIntCounter right = new LongIntCounter();
+        right.increment(2, 1);
+        right.increment(3, 1);
+
+        left.merge(right);
+
+        assertEquals(3, left.size());
+        assertEquals(2, left.get(2));
+        assertArrayEquals(new long[]{2, 1, 3}, left.top(3));
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.LikesMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceVersionsTest {
+
+    private final ResourceVersions versions = new ResourceVersions();
+
+    @Test
+    void shouldChangeFilmTagOnlyForChangedFilm() {
+        String first = versions.filmTag(1, LikesMode.IDS);
+        String second = versions.filmTag(2, LikesMode.IDS);
+
+        versions.filmChanged(1);
+
+        assertNotEquals(first, versions.filmTag(1, LikesMode.IDS));
+        assertEquals(second, versions.filmTag(2, LikesMode.IDS));
+    }
+
+    @Test
+    void shouldForgetDeletedFilms() {
+        versions.filmChanged(1);
+        versions.filmChanged(2);
+        String popular = versions.popularTag(10, null, null, LikesMode.IDS);
+
+        versions.filmDeleted(1);
+
+        assertEquals(1, versions.trackedFilmCount());
+        assertNotEquals(popular, versions.popularTag(10, null, null, LikesMode.IDS));
+    }
+}
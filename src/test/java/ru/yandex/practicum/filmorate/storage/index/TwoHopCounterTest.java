@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoHopCounterTest {
+
+    @Test
+    void shouldCountAllNeighboursWithinBudget() {
+        TwoHopCounter counter = new TwoHopCounter(ForkJoinPool.commonPool(), 100, Integer.MAX_VALUE);
+        Map<Long, long[]> graph = Map.of(
+                1L, new long[]{10, 20, 30},
+                2L, new long[]{20, 30});
+
+        LongIntCounter counts = counter.count(new long[]{1, 2}, graph::get, id -> id != 30);
+
+        assertEquals(1, counts.get(10));
+        assertEquals(2, counts.get(20));
+        assertEquals(0, counts.get(30));
+    }
+
+    @Test
+    void shouldSampleAcrossWholeListWhenOverBudget() {
+        // По 10 соседей на источник при бюджете 5 на каждый: общий друг с самым большим id
+        // стоит в конце обоих списков и при обходе только их начала не был бы учтен
+        TwoHopCounter counter = new TwoHopCounter(ForkJoinPool.commonPool(), 10, Integer.MAX_VALUE);
+        Map<Long, long[]> graph = Map.of(
+                1L, new long[]{11, 12, 13, 14, 15, 16, 17, 18, 1000, 1001},
+                2L, new long[]{21, 22, 23, 24, 25, 26, 27, 28, 1000, 1002});
+
+        LongIntCounter counts = counter.count(new long[]{1, 2}, graph::get, id -> true);
+
+        assertEquals(2, counts.get(1000));
+        assertEquals(9, counts.size());
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Основная база и реплика - две разные базы в памяти; строка, записанная только в реплику,
+// показывает, с какой базы на самом деле прочитаны данные
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-context-primary;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replica.enabled=true",
+        "filmorate.datasource.replica.url=jdbc:h2:mem:routing-context-replica;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replica.password=password",
+        "filmorate.datasource.replica.snapshot.interval-ms=3600000",
+        "filmorate.entity-cache.enabled=false"
+})
+class ReplicaRoutingConfigTest {
+
+    private static final long REPLICA_ONLY_USER_ID = 1_000_000L;
+
+    @Autowired
+    @Qualifier("userDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private ReplicaSnapshotCopier snapshotCopier;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-context-replica;DB_CLOSE_DELAY=-1", "sa", "password"));
+
+        // Свежий снимок на реплике и строка, которой нет в основной базе
+        lagMonitor.heartbeat();
+        snapshotCopier.copy();
+        lagMonitor.heartbeat();
+        assertTrue(lagMonitor.isReplicaUsable());
+        replica.update("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                REPLICA_ONLY_USER_ID, "replica@example.com", "replica-only", "Replica", LocalDate.of(1990, 1, 1));
+    }
+
+    @Test
+    void shouldCopySchemaAndDataToReplica() {
+        assertEquals(primary.queryForObject("SELECT COUNT(*) FROM genres", Integer.class),
+                replica.queryForObject("SELECT COUNT(*) FROM genres", Integer.class));
+    }
+
+    @Test
+    void shouldReadFromReplicaOutsideTransactions() {
+        assertTrue(userStorage.getUserById(REPLICA_ONLY_USER_ID).isPresent());
+    }
+
+    @Test
+    void shouldReadFromReplicaInReadOnlyTransaction() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+
+        assertEquals(Boolean.TRUE, readOnly.execute(status ->
+                userStorage.getUserById(REPLICA_ONLY_USER_ID).isPresent()));
+    }
+
+    @Test
+    void shouldReadAndWriteOnPrimaryInReadWriteTransaction() {
+        User user = new User();
+        user.setEmail("routing-" + System.nanoTime() + "@example.com");
+        user.setLogin("routing" + System.nanoTime());
+        user.setName("Routing");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+
+        Long id = transactionTemplate.execute(status -> {
+            // Транзакция начинается с чтения, но ее соединение должно быть к основной базе
+            assertTrue(userStorage.getUserById(REPLICA_ONLY_USER_ID).isEmpty());
+            return userStorage.createUser(user).getId();
+        });
+
+        assertEquals(1, primary.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id));
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM users WHERE login = ?", Integer.class,
+                user.getLogin()));
+    }
+}
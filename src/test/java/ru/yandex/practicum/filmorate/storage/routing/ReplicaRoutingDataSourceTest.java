@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaLagMonitor monitor;
+    private JdbcTemplate routed;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        monitor = new ReplicaLagMonitor(primary, replica, 5000);
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(monitor);
+        routing.setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, primary.getDataSource(),
+                DataSourceRoute.REPLICA, replica.getDataSource()));
+        routing.setDefaultTargetDataSource(primary.getDataSource());
+        routing.afterPropertiesSet();
+        routed = new JdbcTemplate(new LazyConnectionDataSourceProxy(routing));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RoutingContext.endRequest();
+        primary.execute("DROP ALL OBJECTS");
+        replica.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldReadFromFreshReplica() {
+        replicate();
+
+        assertEquals("replica", read());
+        assertEquals("primary", routed.queryForObject("SELECT name FROM marker", String.class));
+    }
+
+    @Test
+    void shouldStickToPrimaryAfterWriteInRequest() {
+        replicate();
+        RoutingContext.beginRequest();
+
+        assertEquals("replica", read());
+        RoutingContext.enter(false);
+        RoutingContext.exit(false);
+        assertEquals("primary", read());
+
+        RoutingContext.endRequest();
+        RoutingContext.beginRequest();
+        assertEquals("replica", read());
+    }
+
+    @Test
+    void shouldReadFromPrimaryInsideReadWriteTransaction() {
+        replicate();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals("primary", read());
+
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            assertEquals("replica", read());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhenReplicaLags() {
+        replica.update("MERGE INTO replication_heartbeat (id, beat_millis) KEY(id) VALUES (1, ?)",
+                System.currentTimeMillis() - 60_000);
+        monitor.heartbeat();
+
+        assertFalse(monitor.isReplicaUsable());
+        assertEquals("primary", read());
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhenReplicaUnavailable() {
+        replica.execute("DROP TABLE replication_heartbeat");
+        monitor.heartbeat();
+
+        assertEquals(Long.MAX_VALUE, monitor.getLagMillis());
+        assertEquals("primary", read());
+    }
+
+    private String read() {
+        RoutingContext.enter(true);
+        try {
+            return routed.queryForObject("SELECT name FROM marker", String.class);
+        } finally {
+            RoutingContext.exit(true);
+        }
+    }
+
+    // Настоящей репликации между двумя H2 нет, поэтому метка основной базы копируется вручную
+    private void replicate() {
+        monitor.heartbeat();
+        Long beat = primary.queryForObject("SELECT beat_millis FROM replication_heartbeat WHERE id = 1", Long.class);
+        replica.update("MERGE INTO replication_heartbeat (id, beat_millis) KEY(id) VALUES (1, ?)", beat);
+        monitor.heartbeat();
+        assertTrue(monitor.isReplicaUsable());
+    }
+
+    private static JdbcTemplate database(String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO marker VALUES (?)", name);
+        jdbcTemplate.execute("CREATE TABLE replication_heartbeat (id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+        return jdbcTemplate;
+    }
+}